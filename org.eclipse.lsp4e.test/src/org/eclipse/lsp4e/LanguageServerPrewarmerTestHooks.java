@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.util.Collections;
+
+import org.eclipse.core.resources.IProject;
+
+/**
+ * Gives tests, which are in another package of this fragment, access to
+ * package-private operations of {@link LanguageServerPrewarmer}.
+ */
+public final class LanguageServerPrewarmerTestHooks {
+
+	private LanguageServerPrewarmerTestHooks() {
+		// only static methods
+	}
+
+	public static void prewarm(IProject project, String serverId) {
+		LanguageServerPrewarmer.prewarm(Collections.singletonMap(project.getName(), Collections.singletonList(serverId)));
+	}
+
+}
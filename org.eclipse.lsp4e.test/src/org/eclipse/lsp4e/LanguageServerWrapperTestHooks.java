@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+/**
+ * Gives tests, which are in another package of this fragment, access to
+ * package-private operations of {@link ProjectSpecificLanguageServerWrapper}.
+ */
+public final class LanguageServerWrapperTestHooks {
+
+	private LanguageServerWrapperTestHooks() {
+		// only static methods
+	}
+
+	public static void stop(ProjectSpecificLanguageServerWrapper wrapper) {
+		wrapper.stop();
+	}
+
+}
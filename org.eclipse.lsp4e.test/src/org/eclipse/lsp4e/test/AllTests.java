@@ -33,6 +33,10 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
 	LanguageServiceAccessorTest.class,
+	ServerCapabilitiesDescriptorTest.class,
+	OutboundMessageQueueTest.class,
+	LaunchConfigurationStreamProviderTest.class,
+	ProcessOverSocketChannelStreamConnectionProviderTest.class,
 	CompletionTest.class,
 	ContextInformationTest.class,
 	DocumentDidChangeTest.class,
@@ -48,7 +52,9 @@ import org.junit.runners.Suite.SuiteClasses;
 	FormatTest.class,
 	CodeActionTests.class,
 	DocumentLinkTest.class,
-	OpenCloseLanguageServerTest.class
+	OpenCloseLanguageServerTest.class,
+	LanguageServerCrashTest.class,
+	LanguageServerPrewarmerTest.class
 })
 public class AllTests {
 
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.lsp4e.LSPEclipseUtils;
+import org.eclipse.lsp4e.LanguageServersRegistry;
+import org.eclipse.lsp4e.LanguageServersRegistry.LanguageServerDefinition;
+import org.eclipse.lsp4e.LanguageServiceAccessor;
+import org.eclipse.lsp4e.ProjectSpecificLanguageServerWrapper;
+import org.eclipse.lsp4e.tests.mock.MockLanguageSever;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.ui.IEditorPart;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * checks that a language server terminating unexpectedly gets restarted, with documents reopened
+ */
+public class LanguageServerCrashTest {
+
+	private IProject project;
+
+	@Before
+	public void setUp() throws CoreException {
+		MockLanguageSever.reset();
+		project = TestUtils.createProject("LanguageServerCrashTest" + System.currentTimeMillis());
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		project.delete(true, true, new NullProgressMonitor());
+		MockLanguageSever.INSTANCE.shutdown();
+	}
+
+	@Test
+	public void testDocumentReopenedAfterCrash() throws Exception {
+		IFile testFile = TestUtils.createUniqueTestFile(project, "Hello");
+		IEditorPart editor = TestUtils.openEditor(testFile);
+		LanguageServiceAccessor.getLanguageServers(testFile, capabilities -> Boolean.TRUE).iterator().next();
+
+		CompletableFuture<DidOpenTextDocumentParams> didOpenExpectation = new CompletableFuture<>();
+		MockLanguageSever.INSTANCE.setDidOpenCallback(didOpenExpectation);
+		MockConnectionProvider.simulateCrash();
+
+		DidOpenTextDocumentParams reopened = didOpenExpectation.get(5000, TimeUnit.MILLISECONDS);
+		assertEquals(LSPEclipseUtils.toUri(testFile).toString(), reopened.getTextDocument().getUri());
+		assertEquals("Hello", reopened.getTextDocument().getText());
+		assertTrue("version should keep increasing", reopened.getTextDocument().getVersion() > 1);
+
+		TestUtils.closeEditor(editor, false);
+	}
+
+	@Test
+	public void testDocumentConnectedDuringBackoffOpenedAfterRestart() throws Exception {
+		LanguageServerDefinition serverDefinition = LanguageServersRegistry.getInstance().getDefinition("org.eclipse.lsp4e.test.server");
+		assertNotNull(serverDefinition);
+		ProjectSpecificLanguageServerWrapper wrapper = LanguageServiceAccessor.getLSWrapperForConnection(project, serverDefinition);
+		wrapper.start();
+		assertTrue(wrapper.isActive());
+		// no document connected, so no restart gets scheduled by the crash itself
+		MockConnectionProvider.simulateCrash();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (wrapper.isActive() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertFalse(wrapper.isActive());
+
+		CompletableFuture<DidOpenTextDocumentParams> didOpenExpectation = new CompletableFuture<>();
+		MockLanguageSever.INSTANCE.setDidOpenCallback(didOpenExpectation);
+		IFile testFile = TestUtils.createUniqueTestFile(project, "Hello");
+		IEditorPart editor = TestUtils.openEditor(testFile);
+
+		DidOpenTextDocumentParams opened = didOpenExpectation.get(5000, TimeUnit.MILLISECONDS);
+		assertEquals(LSPEclipseUtils.toUri(testFile).toString(), opened.getTextDocument().getUri());
+		assertTrue(wrapper.isActive());
+
+		TestUtils.closeEditor(editor, false);
+	}
+
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.text.tests.util.DisplayHelper;
+import org.eclipse.lsp4e.LanguageServerPlugin;
+import org.eclipse.lsp4e.LanguageServerPrewarmer;
+import org.eclipse.lsp4e.LanguageServerPrewarmerTestHooks;
+import org.eclipse.lsp4e.ProjectSpecificLanguageServerWrapper;
+import org.eclipse.lsp4e.tests.mock.MockLanguageSever;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.IEditorPart;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LanguageServerPrewarmerTest {
+
+	private static final String SERVER_ID = "org.eclipse.lsp4e.test.server";
+
+	private IProject project;
+
+	@Before
+	public void setUp() throws CoreException {
+		MockLanguageSever.reset();
+		project = TestUtils.createProject("LanguageServerPrewarmerTest" + System.currentTimeMillis());
+		getPreferenceStore().setValue(ProjectSpecificLanguageServerWrapper.KEEP_ALIVE_PREF_KEY, 10000L);
+		// don't depend on the load of the machine running the tests
+		getPreferenceStore().setValue(LanguageServerPrewarmer.PREWARM_CPU_BUDGET_PREF_KEY, 100000);
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		getPreferenceStore().setToDefault(ProjectSpecificLanguageServerWrapper.KEEP_ALIVE_PREF_KEY);
+		getPreferenceStore().setToDefault(LanguageServerPrewarmer.PREWARM_CPU_BUDGET_PREF_KEY);
+		project.delete(true, true, new NullProgressMonitor());
+		MockLanguageSever.INSTANCE.shutdown();
+	}
+
+	@Test
+	public void testServerServingDocumentRecorded() throws Exception {
+		IFile testFile = TestUtils.createUniqueTestFile(project, "");
+		IEditorPart editor = TestUtils.openEditor(testFile);
+		try {
+			assertTrue("server serving a document is recorded", new DisplayHelper() {
+				@Override
+				protected boolean condition() {
+					return Arrays.asList(getRecordedServers(project)).contains(SERVER_ID);
+				}
+			}.waitForCondition(Display.getCurrent(), 5000, 50));
+		} finally {
+			TestUtils.closeEditor(editor, false);
+		}
+	}
+
+	@Test
+	public void testPrewarmedServerWithoutDocumentNotRecorded() throws Exception {
+		LanguageServerPrewarmerTestHooks.prewarm(project, SERVER_ID);
+		assertTrue("pre-warmed server is started", new DisplayHelper() {
+			@Override
+			protected boolean condition() {
+				return MockLanguageSever.INSTANCE.isRunning();
+			}
+		}.waitForCondition(Display.getCurrent(), 5000, 50));
+		// forgotten in the next session unless it serves a document
+		assertEquals("", String.join(",", getRecordedServers(project)));
+	}
+
+	@Test
+	public void testDeletedProjectNotPrewarmed() throws Exception {
+		IProject deletedProject = TestUtils.createProject("LanguageServerPrewarmerTestDeleted" + System.currentTimeMillis());
+		deletedProject.delete(true, true, new NullProgressMonitor());
+		LanguageServerPrewarmerTestHooks.prewarm(deletedProject, SERVER_ID);
+		assertFalse("server of a deleted project is not started", new DisplayHelper() {
+			@Override
+			protected boolean condition() {
+				return MockLanguageSever.INSTANCE.isRunning();
+			}
+		}.waitForCondition(Display.getCurrent(), 1000, 50));
+	}
+
+	private static String[] getRecordedServers(IProject project) {
+		String serverIds = InstanceScope.INSTANCE.getNode(LanguageServerPlugin.PLUGIN_ID).node("usedLanguageServers")
+				.get(project.getName(), "");
+		return serverIds.isEmpty() ? new String[0] : serverIds.split("\n");
+	}
+
+	private static IPreferenceStore getPreferenceStore() {
+		return LanguageServerPlugin.getDefault().getPreferenceStore();
+	}
+
+}
@@ -12,20 +12,43 @@
 package org.eclipse.lsp4e.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.lsp4e.LanguageServerWrapperTestHooks;
+import org.eclipse.lsp4e.LanguageServersRegistry;
+import org.eclipse.lsp4e.LanguageServersRegistry.LanguageServerDefinition;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ProjectSpecificLanguageServerWrapper;
+import org.eclipse.lsp4e.ServerCapability;
+import org.eclipse.lsp4e.tests.mock.MockLanguageSever;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentSyncKind;
 import org.eclipse.lsp4j.services.LanguageServer;
 import org.eclipse.ui.PlatformUI;
 import org.junit.After;
@@ -61,6 +84,81 @@ public class LanguageServiceAccessorTest {
 		assertEquals(null, info);
 	}
 	
+	@Test
+	public void testGetLSPDocumentInfosForAsync() throws Exception {
+		assertTrue(LanguageServiceAccessor.getLSPDocumentInfosForAsync(new Document(), capabilities -> Boolean.TRUE).getNow(null).isEmpty());
+
+		IFile testFile = TestUtils.createUniqueTestFile(project, "");
+		IDocument document = TestUtils.getTextViewer(TestUtils.openEditor(testFile)).getDocument();
+		List<@NonNull LSPDocumentInfo> infos = LanguageServiceAccessor.getLSPDocumentInfosForAsync(document, ServerCapability.HOVER).get(5, TimeUnit.SECONDS);
+		assertEquals(1, infos.size());
+		assertSame(document, infos.get(0).getDocument());
+		// servers are now ready, so no need to wait
+		CompletableFuture<@NonNull List<@NonNull LSPDocumentInfo>> readyInfos = LanguageServiceAccessor.getLSPDocumentInfosForAsync(document, ServerCapability.HOVER);
+		assertTrue(readyInfos.isDone());
+		assertEquals(1, readyInfos.get().size());
+	}
+
+	@Test
+	public void testVersionedRequests() throws Exception {
+		IFile testFile = TestUtils.createUniqueTestFile(project, "abc");
+		IDocument document = TestUtils.openTextViewer(testFile).getDocument();
+		LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfosFor(document, ServerCapability.HOVER).get(0);
+		int version = info.getVersion();
+		assertTrue(version >= 0);
+		assertTrue(info.isCurrent(version));
+
+		document.replace(0, 0, "xy\nz");
+		assertFalse(info.isCurrent(version));
+		assertEquals(new Range(new Position(1, 3), new Position(1, 4)), info.remap(new Range(new Position(0, 2), new Position(0, 3)), version));
+
+		int newVersion = info.getVersion();
+		assertTrue(newVersion > version);
+		assertTrue(info.isCurrent(newVersion));
+		// a response for a superseded version is discarded
+		CompletableFuture<String> staleResponse = new CompletableFuture<>();
+		CompletableFuture<String> result = info.sendRequest(service -> staleResponse);
+		document.replace(0, 0, "-");
+		staleResponse.complete("response");
+		assertNull(result.get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testVersionedRequestsWithoutSynchronization() throws Exception {
+		MockLanguageSever.INSTANCE.getInitializeResult().getCapabilities().setTextDocumentSync(TextDocumentSyncKind.None);
+		try {
+			IFile testFile = TestUtils.createUniqueTestFile(project, "abc");
+			IDocument document = TestUtils.openTextViewer(testFile).getDocument();
+			LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfosFor(document, ServerCapability.HOVER).get(0);
+			document.replace(0, 0, "xy\nz");
+			int version = info.getVersion();
+			assertTrue(info.isCurrent(version));
+			// changes aren't sent, so responses are never stale
+			CompletableFuture<String> response = new CompletableFuture<>();
+			CompletableFuture<String> result = info.sendRequest(service -> response);
+			document.replace(0, 0, "-");
+			response.complete("response");
+			assertEquals("response", result.get(1, TimeUnit.SECONDS));
+		} finally {
+			MockLanguageSever.INSTANCE.shutdown();
+		}
+	}
+
+	@Test
+	public void testDocumentBindingInvalidatedOnServerStop() throws Exception {
+		IFile testFile = TestUtils.createUniqueTestFile(project, "");
+		IDocument document = TestUtils.openTextViewer(testFile).getDocument();
+		LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfosForAsync(document, ServerCapability.HOVER).get(5, TimeUnit.SECONDS).get(0);
+		assertSame(info.getLanguageClient(), LanguageServiceAccessor.getLSPDocumentInfosFor(document, ServerCapability.HOVER).get(0).getLanguageClient());
+
+		LanguageServerDefinition serverDefinition = LanguageServersRegistry.getInstance().getDefinition("org.eclipse.lsp4e.test.server");
+		assertNotNull(serverDefinition);
+		LanguageServerWrapperTestHooks.stop(LanguageServiceAccessor.getLSWrapperForConnection(project, serverDefinition));
+		List<@NonNull LSPDocumentInfo> infos = LanguageServiceAccessor.getLSPDocumentInfosFor(document, ServerCapability.HOVER);
+		assertEquals(1, infos.size());
+		assertNotSame(info.getLanguageClient(), infos.get(0).getLanguageClient());
+	}
+
 	@Test
 	public void testGetLanguageServerInvalidFile() throws Exception {
 		IFile testFile = TestUtils.createFile(project, "not_associated_with_ls.abc", "");
@@ -75,6 +173,63 @@ public class LanguageServiceAccessorTest {
 		assertNotNull(info);
 	}
 
+	@Test
+	public void testLSForInheritedContentType() throws Exception {
+		IFile testFile = TestUtils.createFile(project, "shouldUseBaseTypeLS.lsptchild", "");
+		LanguageServer info = LanguageServiceAccessor.getLanguageServers(testFile, capabilites -> Boolean.TRUE).iterator().next();
+		assertNotNull(info);
+	}
+
+	@Test
+	public void testSingletonLSSharedByProjects() throws Exception {
+		IProject otherProject = TestUtils.createProject("LanguageServiceAccessorTest_other" + System.currentTimeMillis());
+		try {
+			IFile testFile = TestUtils.createFile(project, "shouldUseSingleton.lsptsingleton", "");
+			IFile otherTestFile = TestUtils.createFile(otherProject, "shouldUseSingleton.lsptsingleton", "");
+			LanguageServer server = LanguageServiceAccessor.getLanguageServers(testFile, capabilites -> Boolean.TRUE).iterator().next();
+			LanguageServer otherServer = LanguageServiceAccessor.getLanguageServers(otherTestFile, capabilites -> Boolean.TRUE).iterator().next();
+			assertNotNull(server);
+			assertSame(server, otherServer);
+		} finally {
+			otherProject.delete(true, true, new NullProgressMonitor());
+		}
+	}
+
+	@Test
+	public void testProjectLanguageServersDontStartServers() throws Exception {
+		assertTrue(LanguageServiceAccessor.getLanguageServers(project, capabilities -> Boolean.TRUE).isEmpty());
+		IFile testFile = TestUtils.createUniqueTestFile(project, "");
+		LanguageServer server = LanguageServiceAccessor.getLanguageServers(testFile, capabilities -> Boolean.TRUE).iterator().next();
+		assertEquals(Collections.singletonList(server), LanguageServiceAccessor.getLanguageServers(project, ServerCapability.HOVER));
+
+		LanguageServerDefinition serverDefinition = LanguageServersRegistry.getInstance().getDefinition("org.eclipse.lsp4e.test.server");
+		assertNotNull(serverDefinition);
+		ProjectSpecificLanguageServerWrapper wrapper = LanguageServiceAccessor.getLSWrapperForConnection(project, serverDefinition);
+		LanguageServerWrapperTestHooks.stop(wrapper);
+		assertTrue(LanguageServiceAccessor.getLanguageServers(project, capabilities -> Boolean.TRUE).isEmpty());
+		assertFalse(wrapper.isActive());
+	}
+
+	@Test
+	public void testConcurrentLookupsShareWrapper() throws Exception {
+		LanguageServerDefinition serverDefinition = LanguageServersRegistry.getInstance().getDefinition("org.eclipse.lsp4e.test.server");
+		assertNotNull(serverDefinition);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<ProjectSpecificLanguageServerWrapper>> lookups = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				lookups.add(executor.submit(() -> LanguageServiceAccessor.getLSWrapperForConnection(project, serverDefinition)));
+			}
+			ProjectSpecificLanguageServerWrapper wrapper = lookups.get(0).get(5, TimeUnit.SECONDS);
+			assertNotNull(wrapper);
+			for (Future<ProjectSpecificLanguageServerWrapper> lookup : lookups) {
+				assertSame(wrapper, lookup.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 	@Test
 	public void testLSAsRunConfiguration() throws Exception {
 		IFile testFile = TestUtils.createFile(project, "shouldUseRunConfiguration.lspt2", "");
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e.test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.core.externaltools.internal.IExternalToolConstants;
+import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.ILaunchConfiguration;
+import org.eclipse.debug.core.ILaunchConfigurationWorkingCopy;
+import org.eclipse.debug.core.ILaunchManager;
+import org.eclipse.debug.ui.IDebugUIConstants;
+import org.eclipse.lsp4e.LaunchConfigurationStreamProvider;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class LaunchConfigurationStreamProviderTest {
+
+	@Test
+	public void testNonAsciiBytesPreserved() throws Exception {
+		File cat = new File("/bin/cat");
+		Assume.assumeTrue(cat.canExecute());
+		ILaunchManager launchManager = DebugPlugin.getDefault().getLaunchManager();
+		ILaunchConfigurationWorkingCopy workingCopy = launchManager
+				.getLaunchConfigurationType(IExternalToolConstants.ID_PROGRAM_LAUNCH_CONFIGURATION_TYPE)
+				.newInstance(null, "Echo " + System.currentTimeMillis());
+		workingCopy.setAttribute(IExternalToolConstants.ATTR_LOCATION, cat.getAbsolutePath());
+		workingCopy.setAttribute(IExternalToolConstants.ATTR_LAUNCH_IN_BACKGROUND, true);
+		workingCopy.setAttribute(IExternalToolConstants.ATTR_BUILDER_ENABLED, false);
+		workingCopy.setAttribute(IExternalToolConstants.ATTR_SHOW_CONSOLE, false);
+		workingCopy.setAttribute(IExternalToolConstants.ATTR_BUILD_SCOPE, "${none}");
+		workingCopy.setAttribute(IDebugUIConstants.ATTR_CAPTURE_IN_CONSOLE, false);
+		// default configuration, capturing output
+		workingCopy.setAttribute(DebugPlugin.ATTR_CAPTURE_OUTPUT, true);
+		ILaunchConfiguration launchConfiguration = workingCopy.doSave();
+		LaunchConfigurationStreamProvider provider = new LaunchConfigurationStreamProvider(launchConfiguration, null);
+		try {
+			provider.start();
+			InputStream input = provider.getInputStream();
+			OutputStream output = provider.getOutputStream();
+			byte[] sent = "{\"text\":\"hé€ß\"}\n".getBytes(StandardCharsets.UTF_8);
+			output.write(sent);
+			output.flush();
+			byte[] received = new byte[sent.length];
+			int read = 0;
+			while (read < received.length) {
+				int chunk = input.read(received, read, received.length - read);
+				if (chunk == -1) {
+					break;
+				}
+				read += chunk;
+			}
+			assertArrayEquals(sent, received);
+		} finally {
+			provider.stop();
+			launchConfiguration.delete();
+		}
+	}
+
+}
@@ -15,6 +15,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.eclipse.lsp4e.server.StreamConnectionProvider;
 import org.eclipse.lsp4e.tests.mock.MockLanguageSever;
@@ -24,8 +26,19 @@ import org.eclipse.lsp4j.services.LanguageClient;
 
 public class MockConnectionProvider implements StreamConnectionProvider {
 
+	private static Collection<OutputStream> serverOutputs = new ConcurrentLinkedQueue<>();
+
 	private InputStream inputStream  ;
 	private OutputStream outputStream;
+
+	/**
+	 * Closes the connections as if the language server processes terminated unexpectedly
+	 */
+	public static void simulateCrash() throws IOException {
+		while (!serverOutputs.isEmpty()) {
+			serverOutputs.remove(serverOutputs.iterator().next()).close();
+		}
+	}
 	
 	@Override
 	public void start() throws IOException {
@@ -42,6 +55,7 @@ public class MockConnectionProvider implements StreamConnectionProvider {
 		outputStream = out;
 		l.startListening();
 		MockLanguageSever.INSTANCE.addRemoteProxy(l.getRemoteProxy());
+		serverOutputs.add(out2);
 	}
 
 	@Override
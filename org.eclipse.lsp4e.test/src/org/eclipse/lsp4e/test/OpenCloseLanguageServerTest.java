@@ -10,14 +10,27 @@
  *******************************************************************************/
 package org.eclipse.lsp4e.test;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.tests.util.DisplayHelper;
+import org.eclipse.lsp4e.LanguageServerPlugin;
+import org.eclipse.lsp4e.LanguageServersRegistry;
+import org.eclipse.lsp4e.LanguageServersRegistry.LanguageServerDefinition;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
+import org.eclipse.lsp4e.ProjectSpecificLanguageServerWrapper;
 import org.eclipse.lsp4e.tests.mock.MockLanguageSever;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IEditorPart;
@@ -38,10 +51,12 @@ public class OpenCloseLanguageServerTest {
 	public void setUp() throws CoreException {
 		MockLanguageSever.reset();
 		project =  TestUtils.createProject("StartStopServerTest"+System.currentTimeMillis());
+		getPreferenceStore().setValue(ProjectSpecificLanguageServerWrapper.KEEP_ALIVE_PREF_KEY, 0L);
 	}
 
 	@After
 	public void tearDown() throws CoreException {
+		getPreferenceStore().setToDefault(ProjectSpecificLanguageServerWrapper.KEEP_ALIVE_PREF_KEY);
 		project.delete(true, true, new NullProgressMonitor());
 		MockLanguageSever.INSTANCE.shutdown();
 	}
@@ -61,6 +76,85 @@ public class OpenCloseLanguageServerTest {
 		}
 	}
 	
+	@Test
+	public void testLanguageServerKeptAliveAfterClose() throws Exception {
+		getPreferenceStore().setValue(ProjectSpecificLanguageServerWrapper.KEEP_ALIVE_PREF_KEY, 2000L);
+		IFile testFile = TestUtils.createUniqueTestFile(project, "");
+
+		IEditorPart editor = TestUtils.openEditor(testFile);
+		LanguageServiceAccessor.getLanguageServers(testFile, capabilities -> Boolean.TRUE).iterator().next();
+		assertTrue("language server is started", new StartedDisplayHelper().waitForCondition(Display.getCurrent(), 5000, 300));
+
+		((AbstractTextEditor)editor).close(false);
+		assertFalse("language server is kept alive", new StoppedDisplayHelper().waitForCondition(Display.getCurrent(), 1000, 100));
+		assertTrue("language server is closed after keep-alive period", new StoppedDisplayHelper().waitForCondition(Display.getCurrent(), 5000, 300));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedDocumentClosedOverLimit() throws Exception {
+		getPreferenceStore().setValue(ProjectSpecificLanguageServerWrapper.MAX_OPEN_DOCUMENTS_PREF_KEY, 2);
+		LanguageServerDefinition serverDefinition = LanguageServersRegistry.getInstance().getDefinition("org.eclipse.lsp4e.test.server");
+		ProjectSpecificLanguageServerWrapper wrapper = LanguageServiceAccessor.getLSWrapperForConnection(project, serverDefinition);
+		List<IFile> files = new ArrayList<>();
+		ITextFileBufferManager bufferManager = FileBuffers.getTextFileBufferManager();
+		try {
+			for (int i = 0; i < 3; i++) {
+				IFile testFile = TestUtils.createUniqueTestFile(project, "");
+				files.add(testFile);
+				// a buffer not shown in an editor, such as a search preview
+				bufferManager.connect(testFile.getFullPath(), LocationKind.IFILE, new NullProgressMonitor());
+				IDocument document = bufferManager.getTextFileBuffer(testFile.getFullPath(), LocationKind.IFILE).getDocument();
+				wrapper.connect(testFile.getLocation(), document);
+				assertTrue(new DisplayHelper() {
+					@Override
+					protected boolean condition() {
+						return wrapper.isConnectedTo(testFile.getLocation());
+					}
+				}.waitForCondition(Display.getCurrent(), 5000, 50));
+			}
+			assertFalse(wrapper.isConnectedTo(files.get(0).getLocation()));
+			assertTrue(wrapper.isConnectedTo(files.get(1).getLocation()));
+			assertTrue(wrapper.isConnectedTo(files.get(2).getLocation()));
+		} finally {
+			getPreferenceStore().setToDefault(ProjectSpecificLanguageServerWrapper.MAX_OPEN_DOCUMENTS_PREF_KEY);
+			for (IFile file : files) {
+				bufferManager.disconnect(file.getFullPath(), LocationKind.IFILE, new NullProgressMonitor());
+			}
+		}
+	}
+
+	@Test
+	public void testBackgroundBufferConnectedOnlyWhenShownOrUsed() throws Exception {
+		LanguageServerDefinition serverDefinition = LanguageServersRegistry.getInstance().getDefinition("org.eclipse.lsp4e.test.server");
+		ProjectSpecificLanguageServerWrapper wrapper = LanguageServiceAccessor.getLSWrapperForConnection(project, serverDefinition);
+		IFile shownFile = TestUtils.createUniqueTestFile(project, "");
+		IFile usedFile = TestUtils.createUniqueTestFile(project, "");
+		ITextFileBufferManager bufferManager = FileBuffers.getTextFileBufferManager();
+		try {
+			// buffers not shown in an editor, such as search previews
+			bufferManager.connect(shownFile.getFullPath(), LocationKind.IFILE, new NullProgressMonitor());
+			bufferManager.connect(usedFile.getFullPath(), LocationKind.IFILE, new NullProgressMonitor());
+			assertFalse("background buffer is not connected", new ConnectedDisplayHelper(wrapper, shownFile).waitForCondition(Display.getCurrent(), 1000, 50));
+			assertFalse("background buffer is not connected", wrapper.isConnectedTo(usedFile.getLocation()));
+
+			IEditorPart editor = TestUtils.openEditor(shownFile);
+			assertTrue("buffer shown in an editor is connected", new ConnectedDisplayHelper(wrapper, shownFile).waitForCondition(Display.getCurrent(), 5000, 50));
+			assertFalse("background buffer is not connected", wrapper.isConnectedTo(usedFile.getLocation()));
+			TestUtils.closeEditor(editor, false);
+
+			IDocument usedDocument = bufferManager.getTextFileBuffer(usedFile.getFullPath(), LocationKind.IFILE).getDocument();
+			LanguageServiceAccessor.getLSPDocumentInfosFor(usedDocument, capabilities -> Boolean.TRUE);
+			assertTrue("buffer a feature is requested on is connected", new ConnectedDisplayHelper(wrapper, usedFile).waitForCondition(Display.getCurrent(), 5000, 50));
+		} finally {
+			bufferManager.disconnect(shownFile.getFullPath(), LocationKind.IFILE, new NullProgressMonitor());
+			bufferManager.disconnect(usedFile.getFullPath(), LocationKind.IFILE, new NullProgressMonitor());
+		}
+	}
+
+	private static IPreferenceStore getPreferenceStore() {
+		return LanguageServerPlugin.getDefault().getPreferenceStore();
+	}
+
 	protected static class StartedDisplayHelper extends DisplayHelper {
 		@Override
 		protected boolean condition() {
@@ -68,6 +162,21 @@ public class OpenCloseLanguageServerTest {
 		}
 	};
 
+	protected static class ConnectedDisplayHelper extends DisplayHelper {
+		private final ProjectSpecificLanguageServerWrapper wrapper;
+		private final IFile file;
+
+		ConnectedDisplayHelper(ProjectSpecificLanguageServerWrapper wrapper, IFile file) {
+			this.wrapper = wrapper;
+			this.file = file;
+		}
+
+		@Override
+		protected boolean condition() {
+			return this.wrapper.isConnectedTo(this.file.getLocation());
+		}
+	}
+
 	protected static class StoppedDisplayHelper extends DisplayHelper {
 		@Override
 		protected boolean condition() {
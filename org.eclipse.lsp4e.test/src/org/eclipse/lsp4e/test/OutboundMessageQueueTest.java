@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4e.LanguageServerExecutionService;
+import org.eclipse.lsp4e.OutboundMessageQueue;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.junit.Test;
+
+public class OutboundMessageQueueTest {
+
+	@Test
+	public void testMessagesWrittenInOrderWithoutBlockingSender() throws Exception {
+		CountDownLatch writerBlocked = new CountDownLatch(1);
+		CountDownLatch unblockWriter = new CountDownLatch(1);
+		List<String> written = new CopyOnWriteArrayList<>();
+		OutboundMessageQueue queue = LanguageServerExecutionService.getInstance().createOutboundQueue("test", message -> { //$NON-NLS-1$
+			writerBlocked.countDown();
+			try {
+				unblockWriter.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			written.add(((NotificationMessage) message).getMethod());
+		});
+		try {
+			for (int i = 0; i < 10; i++) {
+				queue.consume(notification("m" + i)); //$NON-NLS-1$
+			}
+			assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+			// first message is being written, the others are waiting
+			assertEquals(9, queue.getQueueDepth());
+			assertTrue(LanguageServerExecutionService.getInstance().getOutboundQueueDepth() >= 9);
+			Thread.sleep(50);
+			assertTrue(queue.getCurrentWriteStall() >= 50);
+
+			unblockWriter.countDown();
+			long timeout = System.currentTimeMillis() + 5000;
+			while (written.size() < 10 && System.currentTimeMillis() < timeout) {
+				Thread.sleep(10);
+			}
+			assertEquals(10, written.size());
+			for (int i = 0; i < 10; i++) {
+				assertEquals("m" + i, written.get(i)); //$NON-NLS-1$
+			}
+			assertEquals(0, queue.getQueueDepth());
+			assertEquals(0, queue.getCurrentWriteStall());
+			assertTrue(queue.getMaxWriteStall() >= 50);
+		} finally {
+			unblockWriter.countDown();
+			queue.close();
+		}
+	}
+
+	@Test
+	public void testCloseWritesQueuedMessages() throws Exception {
+		List<String> written = new CopyOnWriteArrayList<>();
+		OutboundMessageQueue queue = LanguageServerExecutionService.getInstance().createOutboundQueue("test", //$NON-NLS-1$
+				message -> written.add(((NotificationMessage) message).getMethod()));
+		queue.consume(notification("first")); //$NON-NLS-1$
+		queue.consume(notification("last")); //$NON-NLS-1$
+		queue.close();
+		try {
+			queue.consume(notification("afterClose")); //$NON-NLS-1$
+			fail("Messages must be rejected once the queue is closed"); //$NON-NLS-1$
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		waitForTermination(queue);
+		assertEquals(2, written.size());
+		assertEquals("last", written.get(1)); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testWriteFailureReported() throws Exception {
+		CompletableFuture<OutboundMessageQueue> failure = new CompletableFuture<>();
+		List<String> written = new CopyOnWriteArrayList<>();
+		OutboundMessageQueue queue = LanguageServerExecutionService.getInstance().createOutboundQueue("test", message -> { //$NON-NLS-1$
+			String method = ((NotificationMessage) message).getMethod();
+			if ("broken".equals(method)) { //$NON-NLS-1$
+				throw new IllegalStateException("Stream closed"); //$NON-NLS-1$
+			}
+			written.add(method);
+		}, failure::complete);
+		try {
+			queue.consume(notification("first")); //$NON-NLS-1$
+			queue.consume(notification("broken")); //$NON-NLS-1$
+			assertSame(queue, failure.get(5, TimeUnit.SECONDS));
+			waitForTermination(queue);
+			assertEquals(Collections.singletonList("first"), written); //$NON-NLS-1$
+			try {
+				queue.consume(notification("afterFailure")); //$NON-NLS-1$
+				fail("Messages must be rejected once writing failed"); //$NON-NLS-1$
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		} finally {
+			queue.close();
+		}
+	}
+
+	@Test
+	public void testInterruptedSenderFailsConnection() throws Exception {
+		CountDownLatch unblockWriter = new CountDownLatch(1);
+		CompletableFuture<OutboundMessageQueue> failure = new CompletableFuture<>();
+		OutboundMessageQueue queue = LanguageServerExecutionService.getInstance().createOutboundQueue("test", message -> { //$NON-NLS-1$
+			try {
+				unblockWriter.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, failure::complete);
+		try {
+			CompletableFuture<Throwable> senderError = new CompletableFuture<>();
+			Thread sender = new Thread(() -> {
+				try {
+					// one being written, then the queue is full
+					for (int i = 0; i <= OutboundMessageQueue.CAPACITY + 1; i++) {
+						queue.consume(notification("m" + i)); //$NON-NLS-1$
+					}
+					senderError.complete(null);
+				} catch (Throwable t) {
+					senderError.complete(t);
+				}
+			});
+			sender.start();
+			long timeout = System.currentTimeMillis() + 5000;
+			while (queue.getQueueDepth() < OutboundMessageQueue.CAPACITY && System.currentTimeMillis() < timeout) {
+				Thread.sleep(10);
+			}
+			assertEquals(OutboundMessageQueue.CAPACITY, queue.getQueueDepth());
+			sender.interrupt();
+			assertTrue(senderError.get(5, TimeUnit.SECONDS) instanceof IllegalStateException);
+			assertSame(queue, failure.get(5, TimeUnit.SECONDS));
+			waitForTermination(queue);
+		} finally {
+			unblockWriter.countDown();
+			queue.close();
+		}
+	}
+
+	private static void waitForTermination(OutboundMessageQueue queue) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 5000;
+		while (!queue.isTerminated() && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertTrue(queue.isTerminated());
+	}
+
+	private static Message notification(String method) {
+		NotificationMessage message = new NotificationMessage();
+		message.setMethod(method);
+		return message;
+	}
+
+}
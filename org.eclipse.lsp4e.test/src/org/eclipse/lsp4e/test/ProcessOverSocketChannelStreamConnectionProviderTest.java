@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4e.server.ProcessOverSocketChannelStreamConnectionProvider;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ProcessOverSocketChannelStreamConnectionProviderTest {
+
+	private static final File SH = new File("/bin/sh");
+
+	@Test
+	public void testPortSubstitutedAndLoopbackConnectionAccepted() throws Exception {
+		Assume.assumeTrue(SH.canExecute());
+		File portFile = File.createTempFile("port", ".txt");
+		portFile.deleteOnExit();
+		// the process only reports the port it was given, the test connects in its place
+		ProcessOverSocketChannelStreamConnectionProvider provider = new ProcessOverSocketChannelStreamConnectionProvider(
+				Arrays.asList(SH.getAbsolutePath(), "-c", "echo " + ProcessOverSocketChannelStreamConnectionProvider.PORT_VARIABLE + " > '" + portFile.getAbsolutePath() + "'; sleep 10"),
+				portFile.getParent()) {
+		};
+		CompletableFuture<Void> start = CompletableFuture.runAsync(() -> {
+			try {
+				provider.start();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		});
+		try {
+			int port = Integer.parseInt(waitForLine(portFile));
+			try (Socket client = new Socket(InetAddress.getLoopbackAddress(), port)) {
+				start.get(5, TimeUnit.SECONDS);
+				assertEquals(port, provider.getPort());
+				byte[] sent = "Content-Length: 2\r\n\r\n{}".getBytes(StandardCharsets.US_ASCII);
+				OutputStream output = client.getOutputStream();
+				output.write(sent);
+				output.flush();
+				InputStream input = provider.getInputStream();
+				byte[] received = new byte[sent.length];
+				int read = 0;
+				while (read < received.length) {
+					int chunk = input.read(received, read, received.length - read);
+					if (chunk == -1) {
+						break;
+					}
+					read += chunk;
+				}
+				assertArrayEquals(sent, received);
+			}
+		} finally {
+			provider.stop();
+		}
+	}
+
+	@Test
+	public void testStartFailsWhenProcessDoesNotConnect() throws Exception {
+		Assume.assumeTrue(SH.canExecute());
+		ProcessOverSocketChannelStreamConnectionProvider provider = new ProcessOverSocketChannelStreamConnectionProvider(
+				Arrays.asList(SH.getAbsolutePath(), "-c", "sleep 10"), System.getProperty("java.io.tmpdir"), 0, 500) {
+		};
+		long startTime = System.currentTimeMillis();
+		try {
+			provider.start();
+			fail("start should fail when the process doesn't connect");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(Integer.toString(provider.getPort())));
+		} finally {
+			provider.stop();
+		}
+		assertTrue("start gives up after the accept timeout", System.currentTimeMillis() - startTime < 5000);
+	}
+
+	private static String waitForLine(File file) throws IOException, InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline) {
+			String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+			if (content.endsWith("\n")) {
+				return content.trim();
+			}
+			Thread.sleep(50);
+		}
+		throw new AssertionError("process didn't report its port");
+	}
+
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.lsp4e.ServerCapabilitiesDescriptor;
+import org.eclipse.lsp4e.ServerCapability;
+import org.eclipse.lsp4j.CompletionOptions;
+import org.eclipse.lsp4j.ServerCapabilities;
+import org.junit.Test;
+
+public class ServerCapabilitiesDescriptorTest {
+
+	@Test
+	public void testProviders() {
+		ServerCapabilities capabilities = new ServerCapabilities();
+		capabilities.setHoverProvider(true);
+		capabilities.setReferencesProvider(false);
+		capabilities.setCompletionProvider(new CompletionOptions());
+		ServerCapabilitiesDescriptor descriptor = new ServerCapabilitiesDescriptor(capabilities);
+
+		assertTrue(descriptor.supports(ServerCapability.HOVER));
+		assertTrue(descriptor.supports(ServerCapability.COMPLETION));
+		assertFalse(descriptor.supports(ServerCapability.REFERENCES));
+		assertFalse(descriptor.supports(ServerCapability.RENAME));
+	}
+
+	@Test
+	public void testArbitraryPredicate() {
+		ServerCapabilities capabilities = new ServerCapabilities();
+		capabilities.setRenameProvider(true);
+		ServerCapabilitiesDescriptor descriptor = new ServerCapabilitiesDescriptor(capabilities);
+
+		assertTrue(descriptor.supports(c -> Boolean.TRUE.equals(c.getRenameProvider())));
+		assertFalse(descriptor.supports(c -> Boolean.TRUE.equals(c.getHoverProvider())));
+	}
+
+	@Test
+	public void testNullCapabilities() {
+		ServerCapabilitiesDescriptor descriptor = new ServerCapabilitiesDescriptor(null);
+		for (ServerCapability provider : ServerCapability.values()) {
+			assertFalse(descriptor.supports(provider));
+		}
+	}
+
+}
@@ -15,12 +15,17 @@ import static org.junit.Assert.fail;
 import java.io.ByteArrayInputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IWorkbenchPage;
@@ -39,7 +44,21 @@ public class TestUtils {
 
 	public static ITextViewer openTextViewer(IFile file) throws InvocationTargetException, PartInitException {
 		IEditorPart editor = openEditor(file);
-		return getTextViewer(editor);
+		ITextViewer viewer = getTextViewer(editor);
+		waitForLanguageServers(viewer.getDocument());
+		return viewer;
+	}
+
+	/**
+	 * Waits for the language servers of the document to be started and initialized, as UI features don't wait for
+	 * them.
+	 */
+	public static void waitForLanguageServers(IDocument document) {
+		try {
+			LanguageServiceAccessor.getLSPDocumentInfosForAsync(document, capabilities -> true).get(5, TimeUnit.SECONDS);
+		} catch (InterruptedException | ExecutionException | TimeoutException e) {
+			fail("Language servers not ready: " + e);
+		}
 	}
 
 	public static ITextViewer getTextViewer(IEditorPart part) throws InvocationTargetException {
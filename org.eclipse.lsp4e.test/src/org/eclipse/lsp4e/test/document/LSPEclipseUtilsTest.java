@@ -12,17 +12,34 @@ package org.eclipse.lsp4e.test.document;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.LocationKind;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.Region;
+import org.eclipse.lsp4e.DocumentSnapshot;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
+import org.eclipse.lsp4e.LineIndex;
 import org.eclipse.lsp4e.test.NoErrorLoggedRule;
 import org.eclipse.lsp4e.test.TestUtils;
 import org.eclipse.lsp4j.Location;
@@ -77,6 +94,29 @@ public class LSPEclipseUtilsTest {
 		}
 	}
 
+	@Test
+	public void testWorkspaceEditOnClosedFiles() throws Exception {
+		IProject p = TestUtils.createProject(getClass().getSimpleName() + System.currentTimeMillis());
+		IFile first = TestUtils.createFile(p, "first", "line1\r\nline2\nline3");
+		IFile second = TestUtils.createFile(p, "second", "");
+		try {
+			Map<String, List<TextEdit>> changes = new HashMap<>();
+			changes.put(LSPEclipseUtils.toUri(first).toString(), Arrays.asList(
+				new TextEdit(new Range(new Position(2, 4), new Position(2, 5)), "THREE"),
+				new TextEdit(new Range(new Position(0, 0), new Position(1, 0)), ""),
+				new TextEdit(new Range(new Position(1, 5), new Position(1, 5)), "!")));
+			changes.put(LSPEclipseUtils.toUri(second).toString(),
+				Collections.singletonList(new TextEdit(new Range(new Position(0, 0), new Position(0, 0)), "new")));
+			LSPEclipseUtils.applyWorkspaceEdit(new WorkspaceEdit(changes));
+			Assert.assertEquals("line2!\nlineTHREE", new String(Files.readAllBytes(first.getLocation().toFile().toPath()), first.getCharset()));
+			Assert.assertEquals("new", new String(Files.readAllBytes(second.getLocation().toFile().toPath()), second.getCharset()));
+			// no buffer left behind
+			Assert.assertNull(FileBuffers.getTextFileBufferManager().getTextFileBuffer(first.getFullPath(), LocationKind.IFILE));
+		} finally {
+			p.delete(true, new NullProgressMonitor());
+		}
+	}
+
 	@Test
 	public void testURIToResourceMapping() throws CoreException { // bug 508841
 		IProject project1 = null;
@@ -96,6 +136,34 @@ public class LSPEclipseUtilsTest {
 		}
 	}
 
+	@Test
+	public void testURIToResourceMappingNestedProject() throws CoreException {
+		IProject outerProject = null;
+		IProject nestedProject = null;
+		try {
+			outerProject = TestUtils.createProject(getClass().getSimpleName() + System.currentTimeMillis());
+			IProjectDescription description = ResourcesPlugin.getWorkspace().newProjectDescription(outerProject.getName() + "nested");
+			description.setLocation(outerProject.getLocation().append("nested"));
+			nestedProject = ResourcesPlugin.getWorkspace().getRoot().getProject(description.getName());
+			nestedProject.create(description, new NullProgressMonitor());
+			nestedProject.open(new NullProgressMonitor());
+			IFile file = nestedProject.getFile("res");
+			file.create(new ByteArrayInputStream(new byte[0]), true, new NullProgressMonitor());
+			String uri = LSPEclipseUtils.toUri(file).toString();
+			Assert.assertEquals(file, LSPEclipseUtils.findResourceFor(uri));
+			Assert.assertEquals(file, LSPEclipseUtils.findResourceFor(uri));
+
+			// once the nested project is gone, its content belongs to the outer one
+			nestedProject.delete(false, true, new NullProgressMonitor());
+			nestedProject = null;
+			outerProject.refreshLocal(IResource.DEPTH_INFINITE, new NullProgressMonitor());
+			Assert.assertEquals(outerProject.getFile("nested/res"), LSPEclipseUtils.findResourceFor(uri));
+		} finally {
+			if (nestedProject != null) { nestedProject.delete(true, new NullProgressMonitor()); }
+			if (outerProject != null) { outerProject.delete(true, new NullProgressMonitor()); }
+		}
+	}
+
 	@Test
 	public void testApplyTextEditLongerThanOrigin() throws Exception {
 		IProject project = null;
@@ -134,6 +202,90 @@ public class LSPEclipseUtilsTest {
 		}
 	}
 	
+	@Test
+	public void testLineIndex() throws Exception {
+		IDocument document = new Document("a\r\nbc\rdef\n\nlast");
+		LineIndex lineIndex = LineIndex.of(document);
+		Assert.assertSame(lineIndex, LineIndex.of(document));
+		Assert.assertEquals(document.getNumberOfLines(), lineIndex.getNumberOfLines());
+		int[] offsets = new int[document.getLength() + 2];
+		for (int offset = 0; offset <= document.getLength(); offset++) {
+			Position position = LSPEclipseUtils.toPosition(offset, document);
+			Assert.assertEquals(position, lineIndex.toPosition(offset));
+			Assert.assertEquals(LSPEclipseUtils.toOffset(position, document), lineIndex.toOffset(position));
+			offsets[document.getLength() - offset] = offset;
+		}
+		offsets[offsets.length - 1] = document.getLength() + 1;
+		Position[] positions = lineIndex.toPositions(offsets);
+		for (int i = 0; i < offsets.length - 1; i++) {
+			Assert.assertEquals(LSPEclipseUtils.toPosition(offsets[i], document), positions[i]);
+		}
+		Assert.assertNull(positions[offsets.length - 1]);
+		Assert.assertArrayEquals(new int[] { 7, -1 },
+				lineIndex.toOffsets(Arrays.asList(new Position(2, 1), new Position(5, 0))));
+
+		document.replace(0, 0, "\n");
+		Assert.assertNotSame(lineIndex, LineIndex.of(document));
+		Assert.assertEquals(new Position(1, 0), LineIndex.of(document).toPosition(1));
+	}
+
+	@Test
+	public void testDocumentSnapshot() throws Exception {
+		IDocument document = new Document("first\r\nsecond");
+		DocumentSnapshot snapshot = DocumentSnapshot.of(document);
+		Assert.assertSame(snapshot, DocumentSnapshot.of(document));
+		Assert.assertEquals(new Region(7, 6), snapshot.getLineInformation(1));
+		Assert.assertEquals(new Region(0, 5), snapshot.getLineInformation(0));
+		Assert.assertEquals("second", snapshot.get(7, 6));
+
+		List<String> snapshotTexts = new ArrayList<>();
+		Thread reader = new Thread(() -> {
+			for (int i = 0; i < 1000; i++) {
+				snapshotTexts.add(DocumentSnapshot.of(document).getText());
+			}
+		});
+		reader.start();
+		for (int i = 0; i < 1000; i++) {
+			document.replace(0, 5, i % 2 == 0 ? "FIRST" : "first");
+		}
+		reader.join(10000);
+		Assert.assertFalse(reader.isAlive());
+		for (String text : snapshotTexts) {
+			Assert.assertTrue(text, text.equals("first\r\nsecond") || text.equals("FIRST\r\nsecond"));
+		}
+		// snapshots don't change along with the document
+		Assert.assertEquals("first\r\nsecond", snapshot.getText());
+		Assert.assertNotSame(snapshot, DocumentSnapshot.of(document));
+	}
+
+	@Test
+	public void testApplyEditsOnlyChangesDifferences() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			text.append("\tline").append(i).append(";\n");
+		}
+		IDocument document = new Document(text.toString());
+		String formatted = text.toString().replace("\tline500;", "\tline500 ;").replace("\tline10;\n", "");
+		List<DocumentEvent> events = new ArrayList<>();
+		document.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				events.add(event);
+			}
+
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+		});
+		LSPEclipseUtils.applyEdits(document, Collections.singletonList(
+				new TextEdit(new Range(new Position(0, 0), new Position(10000, 0)), formatted)));
+		Assert.assertEquals(formatted, document.get());
+		Assert.assertEquals(2, events.size());
+		for (DocumentEvent event : events) {
+			Assert.assertTrue(event.getLength() + event.getText().length() < 10);
+		}
+	}
+
 	@Test
 	public void testURICreationUnix() {
 		Assume.assumeFalse(Platform.OS_WIN32.equals(Platform.getOS()));
@@ -199,6 +199,51 @@ public class DocumentDidChangeTest {
 		((AbstractTextEditor)editor).close(false);
 	}
 
+	@Test
+	public void testIncrementalSyncCoalescesChanges() throws Exception {
+		MockLanguageSever.INSTANCE.getInitializeResult().getCapabilities()
+				.setTextDocumentSync(TextDocumentSyncKind.Incremental);
+
+		IFile testFile = TestUtils.createUniqueTestFile(project, "");
+		IEditorPart editor = TestUtils.openEditor(testFile);
+		ITextViewer viewer = TestUtils.getTextViewer(editor);
+		LanguageServiceAccessor.getLanguageServers(testFile, capabilities -> true);
+
+		CompletableFuture<DidChangeTextDocumentParams> didChangeExpectation = new CompletableFuture<DidChangeTextDocumentParams>();
+		MockLanguageSever.INSTANCE.setDidChangeCallback(didChangeExpectation);
+		viewer.getDocument().replace(0, 0, "Hello");
+		viewer.getDocument().replace(5, 0, " World");
+		DidChangeTextDocumentParams lastChange = didChangeExpectation.get(1000, TimeUnit.MILLISECONDS);
+		assertEquals(2, lastChange.getContentChanges().size());
+		assertEquals("Hello", lastChange.getContentChanges().get(0).getText());
+		TextDocumentContentChangeEvent change1 = lastChange.getContentChanges().get(1);
+		assertEquals(" World", change1.getText());
+		assertEquals(5, change1.getRange().getStart().getCharacter());
+
+		((AbstractTextEditor)editor).close(false);
+	}
+
+	@Test
+	public void testFullSyncSendsLatestText() throws Exception {
+		MockLanguageSever.INSTANCE.getInitializeResult().getCapabilities()
+				.setTextDocumentSync(TextDocumentSyncKind.Full);
+
+		IFile testFile = TestUtils.createUniqueTestFile(project, "");
+		IEditorPart editor = TestUtils.openEditor(testFile);
+		ITextViewer viewer = TestUtils.getTextViewer(editor);
+		LanguageServiceAccessor.getLanguageServers(testFile, capabilities -> true);
+
+		CompletableFuture<DidChangeTextDocumentParams> didChangeExpectation = new CompletableFuture<DidChangeTextDocumentParams>();
+		MockLanguageSever.INSTANCE.setDidChangeCallback(didChangeExpectation);
+		viewer.getDocument().replace(0, 0, "Hello");
+		viewer.getDocument().replace(5, 0, " World");
+		DidChangeTextDocumentParams lastChange = didChangeExpectation.get(1000, TimeUnit.MILLISECONDS);
+		assertEquals(1, lastChange.getContentChanges().size());
+		assertEquals("Hello World", lastChange.getContentChanges().get(0).getText());
+
+		((AbstractTextEditor)editor).close(false);
+	}
+
 	private TextDocumentSyncKind getDocumentSyncKind(ServerCapabilities t) {
 		TextDocumentSyncKind syncKind = null;
 		if (t.getTextDocumentSync().isLeft()) {
@@ -12,6 +12,7 @@ package org.eclipse.lsp4e.test.edit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -22,7 +23,9 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.lsp4e.LSPEclipseUtils;
+import org.eclipse.lsp4e.LanguageServerPlugin;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
+import org.eclipse.lsp4e.LargeDocumentPolicy;
 import org.eclipse.lsp4e.test.TestUtils;
 import org.eclipse.lsp4e.tests.mock.MockLanguageSever;
 import org.eclipse.lsp4j.DidSaveTextDocumentParams;
@@ -72,4 +75,31 @@ public class DocumentDidSaveTest {
 		((AbstractTextEditor)editor).close(false);
 	}
 
+	@Test
+	public void testSaveLargeDocumentWithoutText() throws Exception {
+		LanguageServerPlugin.getDefault().getPreferenceStore().setValue(LargeDocumentPolicy.THRESHOLD_PREF_KEY, 3);
+		try {
+			IFile testFile = TestUtils.createUniqueTestFile(project, "");
+			IEditorPart editor = TestUtils.openEditor(testFile);
+			ITextViewer viewer = TestUtils.getTextViewer(editor);
+			testFile.setLocalTimeStamp(0);
+
+			LanguageServiceAccessor.getLanguageServers(testFile, capabilites -> Boolean.TRUE);
+			CompletableFuture<DidSaveTextDocumentParams> didSaveExpectation = new CompletableFuture<DidSaveTextDocumentParams>();
+			MockLanguageSever.INSTANCE.setDidSaveCallback(didSaveExpectation);
+
+			viewer.getDocument().replace(0, 0, "Hello");
+			editor.doSave(new NullProgressMonitor());
+
+			DidSaveTextDocumentParams lastChange = didSaveExpectation.get(1000, TimeUnit.MILLISECONDS);
+			assertEquals(LSPEclipseUtils.toUri(testFile).toString(), lastChange.getTextDocument().getUri());
+			// the server already has the text of large documents
+			assertNull(lastChange.getText());
+
+			((AbstractTextEditor)editor).close(false);
+		} finally {
+			LanguageServerPlugin.getDefault().getPreferenceStore().setToDefault(LargeDocumentPolicy.THRESHOLD_PREF_KEY);
+		}
+	}
+
 }
@@ -19,15 +19,12 @@ import org.eclipse.core.filebuffers.ITextFileBuffer;
 import org.eclipse.core.filebuffers.ITextFileBufferManager;
 import org.eclipse.core.filebuffers.LocationKind;
 import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 
 /**
- * Startup the language servers that can be used by the document.
+ * Startup the language servers that can be used by the document, according to
+ * the {@link DocumentConnectionPolicy}.
  *
  */
 public class ConnectDocumentToLanguageServerSetupParticipant implements IDocumentSetupParticipant, IDocumentSetupParticipantExtension {
@@ -67,17 +64,7 @@ public class ConnectDocumentToLanguageServerSetupParticipant implements IDocumen
 
 	@Override
 	public void setup(IDocument document, IPath location, LocationKind locationKind) {
-		Job job = new Job("Initialize Language Servers for " + location.toFile().getName()) { //$NON-NLS-1$
-			@Override
-			protected IStatus run(IProgressMonitor monitor) {
-				// connect to LS so they start receiving notifications and pushing diagnostics
-				LanguageServiceAccessor.getLSPDocumentInfosFor(document, capabilities -> Boolean.TRUE);
-				return Status.OK_STATUS;
-			}
-		};
-		job.setUser(true);
-		job.setPriority(Job.INTERACTIVE);
-		job.schedule(100); // give some time to populate doc and associate it with the IFile
+		DocumentConnectionPolicy.getInstance().documentSetup(document, location);
 	}
 
 }
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.lsp4e.LanguageServersRegistry.LanguageServerDefinition;
+
+/**
+ * Caches the language server definitions applying to a file according to its
+ * content types, so content type detection doesn't read the file on each
+ * request. Files without language server are cached too. Entries are checked
+ * against the modification stamp of the file, or of its document when it's
+ * opened in a buffer, and against the registry; they are evicted when the file
+ * is changed or removed.
+ */
+final class ContentTypeCache {
+
+	/**
+	 * Content describers only look at the beginning of the contents
+	 */
+	private static final int DETECTION_PREFIX_LENGTH = 64 * 1024;
+
+	private static ContentTypeCache INSTANCE = null;
+
+	static synchronized ContentTypeCache getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new ContentTypeCache();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Disposes the instance, if it was created, typically when the plug-in stops.
+	 */
+	static synchronized void disposeInstance() {
+		if (INSTANCE != null) {
+			INSTANCE.dispose();
+			INSTANCE = null;
+		}
+	}
+
+	private static final class CacheEntry {
+		private final long modificationStamp;
+		private final boolean fromDocument;
+		private final int registryGeneration;
+		private final @NonNull List<LanguageServerDefinition> definitions;
+
+		CacheEntry(long modificationStamp, boolean fromDocument, int registryGeneration, @NonNull List<LanguageServerDefinition> definitions) {
+			this.modificationStamp = modificationStamp;
+			this.fromDocument = fromDocument;
+			this.registryGeneration = registryGeneration;
+			this.definitions = definitions;
+		}
+	}
+
+	private final Map<IFile, CacheEntry> entries = new ConcurrentHashMap<>();
+
+	private final IResourceChangeListener resourceListener = event -> {
+		if (this.entries.isEmpty()) {
+			return;
+		}
+		if (event.getType() == IResourceChangeEvent.PRE_CLOSE || event.getType() == IResourceChangeEvent.PRE_DELETE) {
+			IResource project = event.getResource();
+			this.entries.keySet().removeIf(file -> Objects.equals(file.getProject(), project));
+		} else if (event.getDelta() != null) {
+			try {
+				event.getDelta().accept(delta -> {
+					if (delta.getResource() instanceof IFile
+							&& (delta.getKind() == IResourceDelta.REMOVED || (delta.getFlags()
+									& (IResourceDelta.CONTENT | IResourceDelta.REPLACED | IResourceDelta.ENCODING)) != 0)) {
+						this.entries.remove(delta.getResource());
+					}
+					return true;
+				});
+			} catch (CoreException e) {
+				LanguageServerPlugin.logError(e);
+			}
+		}
+	};
+
+	private ContentTypeCache() {
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(this.resourceListener,
+				IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+	}
+
+	/**
+	 * @return the definitions of the language servers applying to the given file, in order of its content types
+	 */
+	@NonNull List<LanguageServerDefinition> getLanguageServerDefinitions(@NonNull IFile file) {
+		ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+		IDocument document = buffer != null ? buffer.getDocument() : null;
+		boolean fromDocument = document instanceof IDocumentExtension4;
+		long modificationStamp = fromDocument ? ((IDocumentExtension4) document).getModificationStamp() : file.getModificationStamp();
+		int registryGeneration = LanguageServersRegistry.getInstance().getGeneration();
+
+		CacheEntry entry = this.entries.get(file);
+		if (entry != null && entry.modificationStamp == modificationStamp && entry.fromDocument == fromDocument
+				&& entry.registryGeneration == registryGeneration) {
+			return entry.definitions;
+		}
+
+		IContentType[] contentTypes;
+		try (InputStream contents = fromDocument ? getContents(document, buffer, file) : file.getContents()) {
+			contentTypes = Platform.getContentTypeManager().findContentTypesFor(contents, file.getName());
+		} catch (CoreException | IOException e) {
+			LanguageServerPlugin.logError(e);
+			return Collections.emptyList();
+		}
+		List<LanguageServerDefinition> definitions = Arrays.stream(contentTypes)
+				.filter(Objects::nonNull)
+				.flatMap(contentType -> LanguageServersRegistry.getInstance().findProviderFor(contentType).stream())
+				.filter(Objects::nonNull)
+				.distinct()
+				.collect(Collectors.toList());
+		if (definitions.isEmpty()) {
+			definitions = Collections.emptyList();
+		}
+		this.entries.put(file, new CacheEntry(modificationStamp, fromDocument, registryGeneration, definitions));
+		return definitions;
+	}
+
+	private static InputStream getContents(@NonNull IDocument document, @NonNull ITextFileBuffer buffer, @NonNull IFile file) throws CoreException {
+		String encoding = buffer.getEncoding() != null ? buffer.getEncoding() : file.getCharset();
+		try {
+			String prefix = document.get(0, Math.min(document.getLength(), DETECTION_PREFIX_LENGTH));
+			return new ByteArrayInputStream(prefix.getBytes(encoding));
+		} catch (BadLocationException | IOException e) {
+			// document changed concurrently or unsupported encoding, use file contents instead
+			return file.getContents();
+		}
+	}
+
+	private void dispose() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this.resourceListener);
+		this.entries.clear();
+	}
+
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.IFileBufferListener;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentTypeManager.IContentTypeChangeListener;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4j.ServerCapabilities;
+import org.eclipse.lsp4j.services.LanguageServer;
+
+/**
+ * Remembers which language servers a document is bound to once all of them
+ * are running, initialized and connected to it, so UI features asking for
+ * them repeatedly (hover, hyperlinks...) only do a map lookup. Bindings are
+ * invalidated when a language server starts, stops or crashes, when content
+ * types or associations change, and when the buffer of the document is
+ * disposed or its file moved or deleted.
+ */
+final class DocumentBindingCache {
+
+	private static DocumentBindingCache INSTANCE = null;
+
+	static synchronized DocumentBindingCache getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new DocumentBindingCache();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Disposes the instance, if it was created, typically when the plug-in stops.
+	 */
+	static synchronized void disposeInstance() {
+		if (INSTANCE != null) {
+			INSTANCE.dispose();
+			INSTANCE = null;
+		}
+	}
+
+	/**
+	 * The language servers a document is bound to, whatever their capabilities
+	 */
+	static final class Binding {
+		private final @NonNull URI fileUri;
+		private final @NonNull List<ProjectSpecificLanguageServerWrapper> wrappers;
+		private final @NonNull List<LanguageServer> servers;
+		private final @NonNull List<ServerCapabilitiesDescriptor> descriptors;
+		private final int generation;
+		private final int registryGeneration;
+
+		private Binding(@NonNull URI fileUri, int generation, int registryGeneration) {
+			this.fileUri = fileUri;
+			this.wrappers = new ArrayList<>();
+			this.servers = new ArrayList<>();
+			this.descriptors = new ArrayList<>();
+			this.generation = generation;
+			this.registryGeneration = registryGeneration;
+		}
+
+		@NonNull List<@NonNull LSPDocumentInfo> getInfos(@NonNull IDocument document, @NonNull Predicate<ServerCapabilities> capabilityRequest) {
+			if (this.wrappers.isEmpty()) {
+				return Collections.emptyList();
+			}
+			List<@NonNull LSPDocumentInfo> res = new ArrayList<>(this.wrappers.size());
+			for (int i = 0; i < this.wrappers.size(); i++) {
+				if (this.descriptors.get(i).supports(capabilityRequest)) {
+					res.add(new LSPDocumentInfo(this.fileUri, document, this.wrappers.get(i), this.servers.get(i)));
+				}
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * Collects the language servers of a document; the generation is taken
+	 * before resolving them, so a binding resolved while a server changes
+	 * state doesn't get used.
+	 */
+	final class BindingBuilder {
+		private final Binding binding;
+
+		private BindingBuilder(@NonNull URI fileUri) {
+			this.binding = new Binding(fileUri, generation.get(), LanguageServersRegistry.getInstance().getGeneration());
+		}
+
+		void add(@NonNull ProjectSpecificLanguageServerWrapper wrapper, @NonNull LanguageServer server, @NonNull ServerCapabilitiesDescriptor descriptor) {
+			this.binding.wrappers.add(wrapper);
+			this.binding.servers.add(server);
+			this.binding.descriptors.add(descriptor);
+		}
+
+		@NonNull Binding bind(@NonNull IDocument document) {
+			bindings.put(document, this.binding);
+			return this.binding;
+		}
+	}
+
+	private final AtomicInteger generation = new AtomicInteger();
+	private final Map<IDocument, Binding> bindings = new ConcurrentHashMap<>();
+
+	private final IFileBufferListener bufferListener = new FileBufferListenerAdapter() {
+		@Override
+		public void bufferDisposed(IFileBuffer buffer) {
+			unbind(buffer);
+		}
+
+		@Override
+		public void underlyingFileMoved(IFileBuffer buffer, IPath path) {
+			unbind(buffer);
+		}
+
+		@Override
+		public void underlyingFileDeleted(IFileBuffer buffer) {
+			unbind(buffer);
+		}
+
+		private void unbind(IFileBuffer buffer) {
+			if (buffer instanceof ITextFileBuffer) {
+				bindings.remove(((ITextFileBuffer) buffer).getDocument());
+			}
+		}
+	};
+
+	private final IContentTypeChangeListener contentTypeListener = event -> invalidateAll();
+
+	private DocumentBindingCache() {
+		FileBuffers.getTextFileBufferManager().addFileBufferListener(this.bufferListener);
+		Platform.getContentTypeManager().addContentTypeChangeListener(this.contentTypeListener);
+	}
+
+	/**
+	 * @return the binding of the document if it's still valid, <code>null</code> otherwise
+	 */
+	@Nullable Binding get(@NonNull IDocument document) {
+		Binding binding = this.bindings.get(document);
+		if (binding != null && (binding.generation != this.generation.get()
+				|| binding.registryGeneration != LanguageServersRegistry.getInstance().getGeneration())) {
+			this.bindings.remove(document, binding);
+			return null;
+		}
+		return binding;
+	}
+
+	@NonNull BindingBuilder newBinding(@NonNull URI fileUri) {
+		return new BindingBuilder(fileUri);
+	}
+
+	/**
+	 * Drops the binding of a document, to be called when it's disconnected from a language server.
+	 */
+	void unbind(@NonNull IDocument document) {
+		this.bindings.remove(document);
+	}
+
+	/**
+	 * Drops all bindings, to be called whenever a language server changes state.
+	 */
+	void invalidateAll() {
+		this.generation.incrementAndGet();
+		this.bindings.clear();
+	}
+
+	private void dispose() {
+		FileBuffers.getTextFileBufferManager().removeFileBufferListener(this.bufferListener);
+		Platform.getContentTypeManager().removeContentTypeChangeListener(this.contentTypeListener);
+		this.bindings.clear();
+	}
+
+}
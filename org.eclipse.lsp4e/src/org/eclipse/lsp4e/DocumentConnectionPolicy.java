@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.IFileBufferListener;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+/**
+ * Decides when documents set up by the file buffer manager get connected to
+ * language servers. Only documents shown in a visible editor are connected
+ * right away; other buffers (compare editors, search previews, buffers opened
+ * by refactorings...) are queued and connected once shown in an editor or
+ * when a language feature is requested on them. The number of documents
+ * connected to a language server is bounded, see
+ * {@link ProjectSpecificLanguageServerWrapper#MAX_OPEN_DOCUMENTS_PREF_KEY}.
+ */
+final class DocumentConnectionPolicy {
+
+	private static DocumentConnectionPolicy INSTANCE = null;
+
+	static synchronized DocumentConnectionPolicy getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new DocumentConnectionPolicy();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Disposes the instance, if it was created, typically when the plug-in stops.
+	 */
+	static synchronized void disposeInstance() {
+		if (INSTANCE != null) {
+			INSTANCE.dispose();
+			INSTANCE = null;
+		}
+	}
+
+	/**
+	 * Documents waiting to be shown in an editor to get connected
+	 */
+	private final Map<IDocument, IPath> pendingDocuments = new ConcurrentHashMap<>();
+	/**
+	 * Documents opened in an editor, visible or not
+	 */
+	private final Set<IDocument> editorDocuments = ConcurrentHashMap.newKeySet();
+	private volatile boolean listening;
+	private final AtomicBoolean visibleEditorsCheckScheduled = new AtomicBoolean();
+
+	private final IPartListener2 partListener = new IPartListener2() {
+		@Override
+		public void partVisible(IWorkbenchPartReference partRef) {
+			IDocument document = getDocument(partRef);
+			if (document != null) {
+				editorDocuments.add(document);
+				IPath location = pendingDocuments.remove(document);
+				if (location != null) {
+					connect(document, location);
+				}
+			}
+		}
+
+		@Override
+		public void partOpened(IWorkbenchPartReference partRef) {
+			IDocument document = getDocument(partRef);
+			if (document != null) {
+				editorDocuments.add(document);
+			}
+		}
+
+		@Override
+		public void partInputChanged(IWorkbenchPartReference partRef) {
+			refreshEditorDocuments();
+			partVisible(partRef);
+		}
+
+		@Override
+		public void partClosed(IWorkbenchPartReference partRef) {
+			refreshEditorDocuments();
+		}
+
+		@Override
+		public void partActivated(IWorkbenchPartReference partRef) {
+		}
+
+		@Override
+		public void partBroughtToTop(IWorkbenchPartReference partRef) {
+		}
+
+		@Override
+		public void partDeactivated(IWorkbenchPartReference partRef) {
+		}
+
+		@Override
+		public void partHidden(IWorkbenchPartReference partRef) {
+		}
+	};
+
+	private final IWindowListener windowListener = new IWindowListener() {
+		@Override
+		public void windowOpened(IWorkbenchWindow window) {
+			window.getPartService().addPartListener(partListener);
+		}
+
+		@Override
+		public void windowClosed(IWorkbenchWindow window) {
+			window.getPartService().removePartListener(partListener);
+			refreshEditorDocuments();
+		}
+
+		@Override
+		public void windowActivated(IWorkbenchWindow window) {
+		}
+
+		@Override
+		public void windowDeactivated(IWorkbenchWindow window) {
+		}
+	};
+
+	private final IFileBufferListener bufferListener = new FileBufferListenerAdapter() {
+		@Override
+		public void bufferDisposed(IFileBuffer buffer) {
+			if (buffer instanceof ITextFileBuffer) {
+				pendingDocuments.remove(((ITextFileBuffer) buffer).getDocument());
+			}
+		}
+	};
+
+	private DocumentConnectionPolicy() {
+		FileBuffers.getTextFileBufferManager().addFileBufferListener(this.bufferListener);
+	}
+
+	/**
+	 * Connects the document if it's shown in a visible editor, queues it otherwise.
+	 */
+	void documentSetup(@NonNull IDocument document, @NonNull IPath location) {
+		if (!PlatformUI.isWorkbenchRunning()) {
+			connect(document, location);
+			return;
+		}
+		this.pendingDocuments.put(document, location);
+		if (!this.visibleEditorsCheckScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		// the editor showing the document, if any, is usually created after the document is set up
+		PlatformUI.getWorkbench().getDisplay().asyncExec(() -> {
+			this.visibleEditorsCheckScheduled.set(false);
+			installListeners();
+			for (IWorkbenchWindow window : PlatformUI.getWorkbench().getWorkbenchWindows()) {
+				for (IWorkbenchPage page : window.getPages()) {
+					for (IWorkbenchPartReference editorRef : page.getEditorReferences()) {
+						IWorkbenchPart editor = editorRef.getPart(false);
+						if (editor != null && page.isPartVisible(editor)) {
+							this.partListener.partVisible(editorRef);
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return whether the document is opened in an editor, visible or not; such
+	 *         documents stay connected whatever the number of connected documents
+	 */
+	boolean isOpenInEditor(@NonNull IDocument document) {
+		return this.editorDocuments.contains(document);
+	}
+
+	/**
+	 * Queues a document disconnected from a language server while it's still
+	 * opened, so it gets connected again if it's shown in an editor.
+	 */
+	void documentEvicted(@NonNull IDocument document, @NonNull IPath location) {
+		if (FileBuffers.getTextFileBufferManager().getTextFileBuffer(document) != null) {
+			this.pendingDocuments.put(document, location);
+		}
+	}
+
+	private void connect(@NonNull IDocument document, @NonNull IPath location) {
+		Job job = new Job("Initialize Language Servers for " + location.toFile().getName()) { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				// connect to LS so they start receiving notifications and pushing diagnostics
+				LanguageServiceAccessor.getLSPDocumentInfosFor(document, capabilities -> Boolean.TRUE);
+				return Status.OK_STATUS;
+			}
+		};
+		job.setUser(true);
+		job.setPriority(Job.INTERACTIVE);
+		job.schedule(100); // give some time to populate doc and associate it with the IFile
+	}
+
+	private void installListeners() {
+		if (this.listening) {
+			return;
+		}
+		this.listening = true;
+		IWorkbench workbench = PlatformUI.getWorkbench();
+		workbench.addWindowListener(this.windowListener);
+		for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+			window.getPartService().addPartListener(this.partListener);
+		}
+		refreshEditorDocuments();
+	}
+
+	/**
+	 * Recomputes the documents opened in editors, to be called in UI thread
+	 */
+	private void refreshEditorDocuments() {
+		Set<IDocument> documents = ConcurrentHashMap.newKeySet();
+		for (IWorkbenchWindow window : PlatformUI.getWorkbench().getWorkbenchWindows()) {
+			for (IWorkbenchPage page : window.getPages()) {
+				for (IWorkbenchPartReference editorRef : page.getEditorReferences()) {
+					IDocument document = getDocument(editorRef);
+					if (document != null) {
+						documents.add(document);
+					}
+				}
+			}
+		}
+		this.editorDocuments.retainAll(documents);
+		this.editorDocuments.addAll(documents);
+	}
+
+	private static @Nullable IDocument getDocument(IWorkbenchPartReference partRef) {
+		IWorkbenchPart part = partRef.getPart(false);
+		if (!(part instanceof ITextEditor)) {
+			return null;
+		}
+		ITextEditor editor = (ITextEditor) part;
+		IDocumentProvider provider = editor.getDocumentProvider();
+		return provider != null ? provider.getDocument(editor.getEditorInput()) : null;
+	}
+
+	private void dispose() {
+		FileBuffers.getTextFileBufferManager().removeFileBufferListener(this.bufferListener);
+		if (this.listening && PlatformUI.isWorkbenchRunning()) {
+			IWorkbench workbench = PlatformUI.getWorkbench();
+			workbench.removeWindowListener(this.windowListener);
+			for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+				window.getPartService().removePartListener(this.partListener);
+			}
+		}
+		this.pendingDocuments.clear();
+		this.editorDocuments.clear();
+	}
+
+}
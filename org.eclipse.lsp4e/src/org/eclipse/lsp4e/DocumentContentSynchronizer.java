@@ -12,135 +12,502 @@
 package org.eclipse.lsp4e;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidCloseTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.DidSaveTextDocumentParams;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SaveOptions;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
 import org.eclipse.lsp4j.TextDocumentSyncKind;
+import org.eclipse.lsp4j.TextDocumentSyncOptions;
 import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.LanguageServer;
 
+/**
+ * Sends the content of a document and its changes to a language server.
+ * Changes aren't sent on each document event: they are queued and sent
+ * together, as a single didChange, after a short delay or once a rewrite
+ * session is over. For servers using full synchronization, only the latest
+ * text is sent. Pending changes are always sent before any request, see
+ * {@link #flush()}. Changes of {@link LargeDocumentPolicy large} documents are
+ * never replaced by the full text when the server accepts incremental changes,
+ * and are merged during a longer delay otherwise. Content is read from
+ * {@link DocumentSnapshot}s, as it's sent outside of the thread changing the
+ * document.
+ * <p>
+ * Recent changes are remembered with the version they were made after, so
+ * responses computed for a previous version can be detected, see
+ * {@link #isCurrent(int)}, and their positions remapped to the current content,
+ * see {@link #remap(Position, int)}.
+ */
 final class DocumentContentSynchronizer implements IDocumentListener {
 
+	/**
+	 * Delay in milliseconds during which document changes get merged
+	 */
+	static final long COALESCE_DELAY = 50;
+	/**
+	 * Delay in milliseconds during which changes of large documents get merged
+	 */
+	static final long LARGE_DOCUMENT_COALESCE_DELAY = 1000;
+	/**
+	 * Number of pending incremental changes above which sending the full text is cheaper
+	 */
+	private static final int MAX_PENDING_CHANGES = 1000;
+	/**
+	 * Number of changes remembered to remap positions computed for previous versions
+	 */
+	private static final int MAX_CHANGE_HISTORY = 1000;
+
+	/**
+	 * A change of the document, in the coordinates of the content before it
+	 */
+	private static final class VersionedChange {
+		/**
+		 * The last version sent when the change was made, which the change isn't part of
+		 */
+		private final int version;
+		private final @NonNull Range range;
+		private final int insertedLines;
+		private final int lastInsertedLineLength;
+
+		VersionedChange(int version, @NonNull Range range, @NonNull String text) {
+			this.version = version;
+			this.range = range;
+			int lines = 0;
+			int lastLineStart = 0;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c == '\n' || (c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n'))) {
+					lines++;
+					lastLineStart = i + 1;
+				}
+			}
+			this.insertedLines = lines;
+			this.lastInsertedLineLength = text.length() - lastLineStart;
+		}
+	}
+
 	private final @NonNull ProjectSpecificLanguageServerWrapper languageServerWrapper;
 	private final String fileUri;
+	private final String languageId;
 	private final TextDocumentSyncKind syncKind;
 	private int version = 0;
-	private final DidChangeTextDocumentParams changeParams;
 	private long modificationStamp;
 	private @NonNull IDocument document;
+	private final int largeDocumentThreshold;
+
+	private final List<TextDocumentContentChangeEvent> pendingChanges = new ArrayList<>();
+	private boolean fullTextPending;
+	private long changeCount;
+	private boolean changeSentAsFullText;
+	private boolean flushScheduled;
+	/**
+	 * Whether the content was sent with didOpen, see {@link #documentOpened()}
+	 */
+	private boolean opened;
+	/**
+	 * Number of changes the document started, and whether the last one is still being applied
+	 */
+	private long eventCount;
+	private boolean changing;
+	private volatile long lastAccess = System.nanoTime();
+	private final Deque<VersionedChange> changeHistory = new ArrayDeque<>();
+	/**
+	 * Oldest version positions can be remapped from
+	 */
+	private int historyStartVersion;
+	private final Job flushJob;
 
 	public DocumentContentSynchronizer(@NonNull ProjectSpecificLanguageServerWrapper languageServerWrapper, @NonNull IDocument document,
 			@NonNull IPath filePath, TextDocumentSyncKind syncKind) {
+		this(languageServerWrapper, document, filePath, syncKind, 0);
+	}
+
+	/**
+	 * @param initialVersion the version the document had in a previous connection, so
+	 *            versions keep increasing when the document is reopened in a restarted server
+	 */
+	DocumentContentSynchronizer(@NonNull ProjectSpecificLanguageServerWrapper languageServerWrapper, @NonNull IDocument document,
+			@NonNull IPath filePath, TextDocumentSyncKind syncKind, int initialVersion) {
 		this.languageServerWrapper = languageServerWrapper;
+		this.version = initialVersion;
 		File file = filePath.toFile();
 		this.fileUri = LSPEclipseUtils.toUri(file).toString();
+		this.languageId = filePath.getFileExtension();
 		this.modificationStamp = file.lastModified();
 		this.syncKind = syncKind != null ? syncKind : TextDocumentSyncKind.Full;
-
-		// Initialize change params to avoid it during text typing
-		this.changeParams = new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(), Collections.singletonList(new TextDocumentContentChangeEvent()));
-		this.changeParams.getTextDocument().setUri(fileUri);
+		this.largeDocumentThreshold = filePath.lastSegment() != null ? LargeDocumentPolicy.getThreshold(filePath.lastSegment()) : 0;
+		this.flushJob = new Job(Messages.sendDocumentChanges_job) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				synchronized (DocumentContentSynchronizer.this) {
+					flushScheduled = false;
+					if (isInRewriteSession()) {
+						// whole session is sent at once when it's over
+						scheduleFlush();
+						return Status.OK_STATUS;
+					}
+				}
+				flush();
+				return Status.OK_STATUS;
+			}
+		};
+		this.flushJob.setSystem(true);
 
 		this.document = document;
-		// add a document buffer
-		TextDocumentItem textDocument = new TextDocumentItem();
-		textDocument.setUri(fileUri);
-		textDocument.setText(document.get());
-		textDocument.setLanguageId(filePath.getFileExtension());
-		textDocument.setVersion(++version);
-		LanguageServer ls = languageServerWrapper.getServer();
-		if (ls != null) {
-			ls.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(textDocument));
+	}
+
+	/**
+	 * Sends the content of the document to the language server with didOpen.
+	 * Must be called once this listens to the document, so changes made while
+	 * the content is read are either part of it or sent afterwards.
+	 */
+	void documentOpened() {
+		while (true) {
+			long expectedEventCount;
+			synchronized (this) {
+				boolean interrupted = false;
+				while (this.changing) {
+					// wait for the change being applied to be part of the content, documentChanged notifies
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				expectedEventCount = this.eventCount;
+			}
+			// read outside of the lock, as the document may hold its own lock while notifying this listener
+			DocumentSnapshot snapshot = DocumentSnapshot.of(this.document);
+			synchronized (this) {
+				if (this.eventCount == expectedEventCount) {
+					// changes received so far are part of the content
+					this.pendingChanges.clear();
+					this.fullTextPending = false;
+					this.changeSentAsFullText = false;
+					this.changeHistory.clear();
+					TextDocumentItem textDocument = new TextDocumentItem();
+					textDocument.setUri(fileUri);
+					textDocument.setText(snapshot.getText());
+					textDocument.setLanguageId(this.languageId);
+					textDocument.setVersion(++version);
+					this.historyStartVersion = this.version;
+					this.opened = true;
+					LanguageServer ls = languageServerWrapper.getServer();
+					if (ls != null) {
+						ls.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(textDocument));
+					}
+					return;
+				}
+				// document changed meanwhile, read it again
+			}
 		}
 	}
 
 	@Override
 	public void documentChanged(DocumentEvent event) {
 		checkEvent(event);
-		if (syncKind == TextDocumentSyncKind.Full) {
-			updateChangeEvent(event);
-		}
-		changeParams.getTextDocument().setVersion(++version);
-		LanguageServer ls = languageServerWrapper.getServer();
-		if (ls != null) {
-			ls.getTextDocumentService().didChange(changeParams);
+		touch();
+		synchronized (this) {
+			// a change which started before this listened to the document isn't known but by its end
+			boolean unknownChange = !this.changing;
+			if (unknownChange) {
+				this.eventCount++;
+			}
+			this.changing = false;
+			notifyAll();
+			if (syncKind == TextDocumentSyncKind.None) {
+				return;
+			}
+			this.changeCount++;
+			if (unknownChange) {
+				this.changeSentAsFullText = true;
+				this.pendingChanges.clear();
+				this.changeHistory.clear();
+				this.historyStartVersion = this.version + 1;
+			}
+			if (syncKind == TextDocumentSyncKind.Full || this.changeSentAsFullText) {
+				// text is read when sending, so only the latest one gets sent
+				this.fullTextPending = true;
+			}
+			scheduleFlush();
 		}
 	}
 
 	@Override
 	public void documentAboutToBeChanged(DocumentEvent event) {
 		checkEvent(event);
-		if (syncKind == TextDocumentSyncKind.Incremental) {
-			// this really needs to happen before event gets actually
-			// applied, to properly compute positions
-			updateChangeEvent(event);
+		// this really needs to happen before event gets actually
+		// applied, to properly compute positions
+		TextDocumentContentChangeEvent changeEvent = toChangeEvent(event);
+		synchronized (this) {
+			this.eventCount++;
+			this.changing = true;
+			if (syncKind == TextDocumentSyncKind.Incremental) {
+				if (changeEvent != null && this.pendingChanges.size() >= MAX_PENDING_CHANGES && !this.fullTextPending && isLarge()
+						&& this.opened) {
+					// sending the full text of a large document costs more than many small changes
+					sendChanges(new ArrayList<>(this.pendingChanges));
+					this.pendingChanges.clear();
+				}
+				if (changeEvent == null || this.pendingChanges.size() >= MAX_PENDING_CHANGES) {
+					this.pendingChanges.clear();
+					this.fullTextPending = true;
+				}
+				this.changeSentAsFullText = this.fullTextPending;
+				if (!this.changeSentAsFullText) {
+					this.pendingChanges.add(changeEvent);
+				}
+			}
+			if (syncKind != TextDocumentSyncKind.None) {
+				// recorded along with the pending change, so requests tagged meanwhile see both or none
+				recordChange(changeEvent);
+			}
+		}
+	}
+
+	private synchronized void recordChange(TextDocumentContentChangeEvent changeEvent) {
+		if (changeEvent == null) {
+			// positions can't be remapped across this change
+			this.changeHistory.clear();
+			this.historyStartVersion = this.version + 1;
+			return;
+		}
+		String text = changeEvent.getText() != null ? changeEvent.getText() : ""; //$NON-NLS-1$
+		this.changeHistory.addLast(new VersionedChange(this.version, changeEvent.getRange(), text));
+		if (this.changeHistory.size() > MAX_CHANGE_HISTORY) {
+			this.historyStartVersion = this.changeHistory.removeFirst().version + 1;
 		}
 	}
 
 	/**
-	 * Convert Eclipse {@link DocumentEvent} to LS according {@link TextDocumentSyncKind}.
-	 * {@link TextDocumentContentChangeEventImpl}.
+	 * Sends pending changes, then returns the version of the document requests
+	 * sent afterwards are computed for.
+	 */
+	int flushAndGetVersion() {
+		while (true) {
+			flush();
+			synchronized (this) {
+				if (!this.opened || (this.pendingChanges.isEmpty() && !this.fullTextPending)) {
+					return this.version;
+				}
+			}
+			// document changed meanwhile
+		}
+	}
+
+	/**
+	 * @return whether the document wasn't changed since the given version was
+	 *         sent. Changes aren't recorded when the server doesn't
+	 *         synchronize documents, so such documents are always current.
+	 */
+	synchronized boolean isCurrent(int version) {
+		if (version < this.historyStartVersion) {
+			return false;
+		}
+		VersionedChange lastChange = this.changeHistory.peekLast();
+		return lastChange == null || lastChange.version < version;
+	}
+
+	/**
+	 * @return the position in the current content matching the given position
+	 *         of the given version, or <code>null</code> if the changes since
+	 *         that version are not known anymore
+	 */
+	synchronized @Nullable Position remap(@NonNull Position position, int version) {
+		if (version < this.historyStartVersion) {
+			return null;
+		}
+		int line = position.getLine();
+		int character = position.getCharacter();
+		for (VersionedChange change : this.changeHistory) {
+			if (change.version < version) {
+				continue;
+			}
+			Position start = change.range.getStart();
+			Position end = change.range.getEnd();
+			if (line < start.getLine() || (line == start.getLine() && character < start.getCharacter())) {
+				// before the change
+				continue;
+			}
+			if (line < end.getLine() || (line == end.getLine() && character < end.getCharacter())) {
+				// in the replaced text
+				line = start.getLine();
+				character = start.getCharacter();
+				continue;
+			}
+			if (line == end.getLine()) {
+				character = (change.insertedLines == 0 ? start.getCharacter() : 0) + change.lastInsertedLineLength
+						+ character - end.getCharacter();
+			}
+			line += start.getLine() + change.insertedLines - end.getLine();
+		}
+		return new Position(line, character);
+	}
+
+	/**
+	 * Convert Eclipse {@link DocumentEvent} to an incremental LS change event.
 	 *
 	 * @param event
-	 *            Eclipse {@link DocumentEvent}
-	 * @return true if change event is ready to be sent
+	 *            Eclipse {@link DocumentEvent}, before it's applied
+	 * @return the LS change event, or <code>null</code> if it can't be computed
 	 */
-	private boolean updateChangeEvent(DocumentEvent event) {
+	private TextDocumentContentChangeEvent toChangeEvent(DocumentEvent event) {
 		IDocument document = event.getDocument();
-		TextDocumentContentChangeEvent changeEvent = null;
-		TextDocumentSyncKind syncKind = getTextDocumentSyncKind();
-		switch (syncKind) {
-		case None:
-			return false;
-		case Full:
-			changeParams.getContentChanges().get(0).setText(event.getDocument().get());
-			break;
-		case Incremental:
-			changeEvent = changeParams.getContentChanges().get(0);
-			String newText = event.getText();
-			int offset = event.getOffset();
-			int length = event.getLength();
-			try {
-				// try to convert the Eclipse start/end offset to LS range.
-				Range range = new Range(LSPEclipseUtils.toPosition(offset, document),
-						LSPEclipseUtils.toPosition(offset + length, document));
-				changeEvent.setRange(range);
-				changeEvent.setText(newText);
-				changeEvent.setRangeLength(length);
-			} catch (BadLocationException e) {
-				// error while conversion (should never occur)
-				// set the full document text as changes.
-				changeEvent.setText(document.get());
-			}
-			break;
-		}
-		return true;
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		String newText = event.getText();
+		int offset = event.getOffset();
+		int length = event.getLength();
+		try {
+			// try to convert the Eclipse start/end offset to LS range.
+			Range range = new Range(LSPEclipseUtils.toPosition(offset, document),
+					LSPEclipseUtils.toPosition(offset + length, document));
+			changeEvent.setRange(range);
+			changeEvent.setText(newText);
+			changeEvent.setRangeLength(length);
+		} catch (BadLocationException e) {
+			// error while conversion (should never occur)
+			// send the full document text once the change is applied.
+			return null;
+		}
+		return changeEvent;
+	}
+
+	private void scheduleFlush() {
+		if (!this.flushScheduled) {
+			this.flushScheduled = true;
+			this.flushJob.schedule(this.syncKind == TextDocumentSyncKind.Full && isLarge() ? LARGE_DOCUMENT_COALESCE_DELAY : COALESCE_DELAY);
+		}
+	}
+
+	private boolean isLarge() {
+		return this.largeDocumentThreshold > 0 && this.document.getLength() > this.largeDocumentThreshold;
+	}
+
+	private boolean isInRewriteSession() {
+		return this.document instanceof IDocumentExtension4
+				&& ((IDocumentExtension4) this.document).getActiveRewriteSession() != null;
+	}
+
+	/**
+	 * Sends pending changes, if any, as a single didChange. Must be called
+	 * before sending any request about the document, so the language server
+	 * answers according to the latest content.
+	 */
+	void flush() {
+		while (true) {
+			long expectedChangeCount;
+			synchronized (this) {
+				if (!this.opened) {
+					// sent along with the whole content
+					return;
+				}
+				if (!this.fullTextPending) {
+					if (!this.pendingChanges.isEmpty()) {
+						List<TextDocumentContentChangeEvent> changes = new ArrayList<>(this.pendingChanges);
+						this.pendingChanges.clear();
+						sendChanges(changes);
+					}
+					return;
+				}
+				expectedChangeCount = this.changeCount;
+			}
+			// read outside of the lock, as the document may hold its own lock while notifying this listener
+			TextDocumentContentChangeEvent fullText = new TextDocumentContentChangeEvent();
+			fullText.setText(DocumentSnapshot.of(this.document).getText());
+			synchronized (this) {
+				if (this.changeCount == expectedChangeCount) {
+					this.pendingChanges.clear();
+					this.fullTextPending = false;
+					sendChanges(Collections.singletonList(fullText));
+					return;
+				}
+				// document changed meanwhile, read it again
+			}
+		}
+	}
+
+	/**
+	 * Sends under the lock, so changes are sent in the order of their versions
+	 */
+	private void sendChanges(List<TextDocumentContentChangeEvent> changes) {
+		// never start nor wait for the server here, this is called before each request
+		LanguageServer ls = languageServerWrapper.getInitializedServer();
+		if (ls == null) {
+			// server is gone, document gets reopened with its whole content when reconnected;
+			// the dropped changes still end a version, so requests aren't taken as stale forever
+			this.changeHistory.clear();
+			this.historyStartVersion = ++version;
+			return;
+		}
+		VersionedTextDocumentIdentifier identifier = new VersionedTextDocumentIdentifier();
+		identifier.setUri(fileUri);
+		identifier.setVersion(++version);
+		ls.getTextDocumentService().didChange(new DidChangeTextDocumentParams(identifier, changes));
 	}
 
 	public void documentSaved(long timestamp) {
+		flush();
 		this.modificationStamp = timestamp;
 		TextDocumentIdentifier identifier = new TextDocumentIdentifier(fileUri);
-		DidSaveTextDocumentParams params = new DidSaveTextDocumentParams(identifier, document.get());
+		DidSaveTextDocumentParams params = new DidSaveTextDocumentParams();
+		params.setTextDocument(identifier);
+		if (!isLarge() || isTextOnSaveRequested()) {
+			// unless the server asked for it, the text is optional, the server already has it
+			params.setText(DocumentSnapshot.of(document).getText());
+		}
 		LanguageServer ls = languageServerWrapper.getServer();
 		if (ls != null) {
 			ls.getTextDocumentService().didSave(params);
 		}
 	}
 
+	/**
+	 * @return whether the server registered to get the text of saved documents
+	 */
+	private boolean isTextOnSaveRequested() {
+		ServerCapabilitiesDescriptor descriptor = languageServerWrapper.getCapabilitiesDescriptor();
+		Either<TextDocumentSyncKind, TextDocumentSyncOptions> syncOptions = descriptor != null
+				? descriptor.getCapabilities().getTextDocumentSync()
+				: null;
+		if (syncOptions == null || !syncOptions.isRight()) {
+			return false;
+		}
+		SaveOptions saveOptions = syncOptions.getRight().getSave();
+		return saveOptions != null && Boolean.TRUE.equals(saveOptions.getIncludeText());
+	}
+
 	public void documentClosed() {
+		flush();
+		this.flushJob.cancel();
 		TextDocumentIdentifier identifier = new TextDocumentIdentifier(fileUri);
 		DidCloseTextDocumentParams params = new DidCloseTextDocumentParams(identifier);
 		LanguageServer ls = languageServerWrapper.getServer();
@@ -149,15 +516,6 @@ final class DocumentContentSynchronizer implements IDocumentListener {
 		}
 	}
 
-	/**
-	 * Returns the text document sync kind capabilities of the server and {@link TextDocumentSyncKind#Full} otherwise.
-	 *
-	 * @return the text document sync kind capabilities of the server and {@link TextDocumentSyncKind#Full} otherwise.
-	 */
-	private TextDocumentSyncKind getTextDocumentSyncKind() {
-		return syncKind;
-	}
-
 	protected long getModificationStamp() {
 		return modificationStamp;
 	}
@@ -166,6 +524,21 @@ final class DocumentContentSynchronizer implements IDocumentListener {
 		return this.document;
 	}
 
+	int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Marks the document as used, so it's less likely to be closed when too many documents are open
+	 */
+	void touch() {
+		this.lastAccess = System.nanoTime();
+	}
+
+	long getLastAccess() {
+		return this.lastAccess;
+	}
+
 	private void checkEvent(DocumentEvent event) {
 		if (this.document != event.getDocument()) {
 			throw new IllegalStateException("Synchronizer should apply to only a single document, which is the one it was instantiated for"); //$NON-NLS-1$
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ISynchronizable;
+import org.eclipse.jface.text.Region;
+import org.eclipse.lsp4j.Position;
+
+/**
+ * Immutable content of a document at a given time, with its
+ * {@link LineIndex}. Code running outside of the thread modifying the document
+ * (usually the UI thread) reads snapshots instead of the live document, so it
+ * never sees a partially applied change, nor a content changing between two
+ * reads.
+ * <p>
+ * Reading a snapshot never locks the document: the changes of documents are
+ * tracked from their first snapshot on, a read waits for the change being
+ * applied, if any, to be over, and a read overlapping a change is made again.
+ * Snapshots are shared by all readers until the document is modified, as long
+ * as memory allows it.
+ *
+ * @since 0.3.0
+ */
+public final class DocumentSnapshot {
+
+	/**
+	 * Maximum time in milliseconds to wait for the notification of the end of
+	 * a change before checking again
+	 */
+	private static final long CHANGE_WAIT_TIMEOUT = 10;
+
+	private static final Map<IDocument, ChangeTracker> TRACKERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Counts changes of a document. Must not reference the document, which is
+	 * the weak key it's mapped to.
+	 */
+	private static final class ChangeTracker implements IDocumentListener {
+		private final AtomicLong started = new AtomicLong();
+		private volatile long finished;
+		private volatile @Nullable Thread changingThread;
+		private volatile SoftReference<DocumentSnapshot> last = new SoftReference<>(null);
+		/**
+		 * Whether no change can have been in progress, unnoticed, when this
+		 * got registered
+		 */
+		private volatile boolean validated;
+
+		ChangeTracker(boolean validated) {
+			this.validated = validated;
+		}
+
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			this.changingThread = Thread.currentThread();
+			this.started.incrementAndGet();
+		}
+
+		@Override
+		public synchronized void documentChanged(DocumentEvent event) {
+			if (this.changingThread == null) {
+				// change started before this was registered, content read meanwhile is outdated
+				this.started.incrementAndGet();
+			}
+			this.finished = this.started.get();
+			this.changingThread = null;
+			this.validated = true;
+			notifyAll();
+		}
+
+		/**
+		 * Waits for the change being applied, or the one which may have been
+		 * in progress when this got registered, to be over
+		 *
+		 * @return whether the thread got interrupted while waiting
+		 */
+		synchronized boolean awaitChangeApplied() {
+			try {
+				if (this.finished != this.started.get() || !this.validated) {
+					wait(CHANGE_WAIT_TIMEOUT);
+				}
+				return false;
+			} catch (InterruptedException e) {
+				return true;
+			}
+		}
+	}
+
+	private final @NonNull String text;
+	private final long modificationStamp;
+	/**
+	 * Number of changes of the document this snapshot comes after, -1 if not tracked
+	 */
+	private final long sequence;
+	private volatile LineIndex lineIndex;
+
+	private DocumentSnapshot(@NonNull String text, long modificationStamp, long sequence) {
+		this.text = text;
+		this.modificationStamp = modificationStamp;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Returns the snapshot of the current content of the document. Must not be
+	 * called while holding a lock the thread modifying the document may wait
+	 * for, as a change being applied is waited for.
+	 *
+	 * @return the snapshot of the current content of the document, reused as
+	 *         long as the document isn't modified
+	 */
+	public static @NonNull DocumentSnapshot of(@NonNull IDocument document) {
+		ChangeTracker tracker = getTracker(document);
+		if (tracker.changingThread == Thread.currentThread()) {
+			// called by a listener of the change, nothing else can modify the document meanwhile
+			return new DocumentSnapshot(document.get(), getModificationStamp(document), -1);
+		}
+		boolean interrupted = false;
+		try {
+			while (true) {
+				long sequence = tracker.started.get();
+				if (tracker.finished != sequence) {
+					// a change is being applied
+					interrupted |= tracker.awaitChangeApplied();
+					continue;
+				}
+				long stamp = getModificationStamp(document);
+				DocumentSnapshot last = tracker.last.get();
+				if (last != null && last.sequence == sequence && last.modificationStamp == stamp) {
+					return last;
+				}
+				String text;
+				try {
+					text = document.get();
+					if (!tracker.validated && !text.equals(document.get())) {
+						// a change started before tracking is being applied
+						interrupted |= tracker.awaitChangeApplied();
+						continue;
+					}
+				} catch (RuntimeException e) {
+					// read while the document was being changed
+					interrupted |= tracker.awaitChangeApplied();
+					continue;
+				}
+				if (tracker.started.get() == sequence && getModificationStamp(document) == stamp) {
+					DocumentSnapshot res = new DocumentSnapshot(text, stamp, sequence);
+					tracker.last = new SoftReference<>(res);
+					return res;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return the tracker of the changes of the document, registered on first
+	 *         use. Documents which are {@link ISynchronizable} with a lock
+	 *         object get it registered under their lock, which their changes
+	 *         are applied and notified under, so no change can be in
+	 *         progress.
+	 */
+	private static @NonNull ChangeTracker getTracker(@NonNull IDocument document) {
+		ChangeTracker tracker = TRACKERS.get(document);
+		if (tracker != null) {
+			return tracker;
+		}
+		// not taken while holding the map lock, so threads holding other document locks aren't blocked
+		Object lock = document instanceof ISynchronizable ? ((ISynchronizable) document).getLockObject() : null;
+		if (lock != null) {
+			synchronized (lock) {
+				return register(document, true);
+			}
+		}
+		return register(document, false);
+	}
+
+	private static @NonNull ChangeTracker register(@NonNull IDocument document, boolean validated) {
+		synchronized (TRACKERS) {
+			ChangeTracker tracker = TRACKERS.get(document);
+			if (tracker == null) {
+				tracker = new ChangeTracker(validated);
+				document.addDocumentListener(tracker);
+				TRACKERS.put(document, tracker);
+			}
+			return tracker;
+		}
+	}
+
+	private static long getModificationStamp(IDocument document) {
+		return document instanceof IDocumentExtension4 ? ((IDocumentExtension4) document).getModificationStamp()
+				: IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
+	public @NonNull String getText() {
+		return this.text;
+	}
+
+	public int getLength() {
+		return this.text.length();
+	}
+
+	/**
+	 * @return the modification stamp the document had, or
+	 *         {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}
+	 */
+	public long getModificationStamp() {
+		return this.modificationStamp;
+	}
+
+	public @NonNull LineIndex getLineIndex() {
+		LineIndex res = this.lineIndex;
+		if (res == null) {
+			// computing it twice is harmless
+			res = LineIndex.of(this.text);
+			this.lineIndex = res;
+		}
+		return res;
+	}
+
+	public @NonNull String get(int offset, int length) throws BadLocationException {
+		if (offset < 0 || length < 0 || offset + length > this.text.length()) {
+			throw new BadLocationException("Invalid region " + offset + ',' + length); //$NON-NLS-1$
+		}
+		return this.text.substring(offset, offset + length);
+	}
+
+	/**
+	 * Same as {@link IDocument#getLineInformation(int)}: the region of the
+	 * line, without its delimiter
+	 */
+	public @NonNull IRegion getLineInformation(int line) throws BadLocationException {
+		LineIndex index = getLineIndex();
+		int start = index.getLineOffset(line);
+		int end = line + 1 < index.getNumberOfLines() ? index.getLineOffset(line + 1) : this.text.length();
+		while (end > start && (this.text.charAt(end - 1) == '\n' || this.text.charAt(end - 1) == '\r')) {
+			end--;
+		}
+		return new Region(start, end - start);
+	}
+
+	/**
+	 * Same as {@link LSPEclipseUtils#toOffset(Position, IDocument)}
+	 */
+	public int toOffset(@NonNull Position position) throws BadLocationException {
+		return getLineIndex().toOffset(position);
+	}
+
+	/**
+	 * Same as {@link LSPEclipseUtils#toPosition(int, IDocument)}
+	 */
+	public @NonNull Position toPosition(int offset) throws BadLocationException {
+		return getLineIndex().toPosition(offset);
+	}
+
+}
@@ -30,13 +30,11 @@ import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
-import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.NullProgressMonitor;
-import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
@@ -50,9 +48,6 @@ import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentPositionParams;
 import org.eclipse.lsp4j.TextEdit;
 import org.eclipse.lsp4j.WorkspaceEdit;
-import org.eclipse.ltk.core.refactoring.CompositeChange;
-import org.eclipse.ltk.core.refactoring.DocumentChange;
-import org.eclipse.ltk.core.refactoring.PerformChangeOperation;
 import org.eclipse.text.edits.MalformedTreeException;
 import org.eclipse.text.edits.MultiTextEdit;
 import org.eclipse.text.edits.ReplaceEdit;
@@ -120,26 +115,7 @@ public class LSPEclipseUtils {
 		if (uri == null || uri.isEmpty()) {
 			return null;
 		}
-		String convertedUri = uri.replace("file:///", "file:/"); //$NON-NLS-1$//$NON-NLS-2$
-		convertedUri = convertedUri.replace("file://", "file:/"); //$NON-NLS-1$//$NON-NLS-2$
-		IPath path = Path.fromOSString(new File(URI.create(convertedUri)).getAbsolutePath());
-		IProject project = null;
-		for (IProject aProject : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
-			IPath location = aProject.getLocation();
-			if (location != null && location.isPrefixOf(path)
-					&& (project == null || project.getLocation().segmentCount() < location.segmentCount())) {
-				project = aProject;
-			}
-		}
-		if (project == null) {
-			return null;
-		}
-		IPath projectRelativePath = path.removeFirstSegments(project.getLocation().segmentCount());
-		if (projectRelativePath.isEmpty()) {
-			return project;
-		} else {
-			return project.findMember(projectRelativePath);
-		}
+		return ResourceUriResolver.getInstance().findResource(uri);
 	}
 
 	public static void applyEdit(TextEdit textEdit, IDocument document) throws BadLocationException {
@@ -151,7 +127,8 @@ public class LSPEclipseUtils {
 
 	/**
 	 * Method will apply all edits to document as single modification. Needs to
-	 * be executed in UI thread.
+	 * be executed in UI thread. Only the parts of the replaced regions which
+	 * actually change are modified, see {@link TextEditNormalizer}.
 	 *
 	 * @param document
 	 *            document to modify
@@ -169,12 +146,19 @@ public class LSPEclipseUtils {
 		}
 
 		MultiTextEdit edit = new MultiTextEdit();
+		DocumentSnapshot snapshot = DocumentSnapshot.of(document);
 		for (TextEdit textEdit : edits) {
 			if (textEdit != null) {
 				try {
-					int offset = LSPEclipseUtils.toOffset(textEdit.getRange().getStart(), document);
-					int length = LSPEclipseUtils.toOffset(textEdit.getRange().getEnd(), document) - offset;
-					edit.addChild(new ReplaceEdit(offset, length, textEdit.getNewText()));
+					int offset = snapshot.toOffset(textEdit.getRange().getStart());
+					int end = snapshot.toOffset(textEdit.getRange().getEnd());
+					if (end < offset || end > snapshot.getLength()) {
+						throw new BadLocationException("Invalid range " + textEdit.getRange()); //$NON-NLS-1$
+					}
+					for (ReplaceEdit replaceEdit : TextEditNormalizer.normalize(snapshot.getText(), offset, end - offset,
+							textEdit.getNewText())) {
+						edit.addChild(replaceEdit);
+					}
 				} catch (BadLocationException e) {
 					LanguageServerPlugin.logError(e);
 				}
@@ -267,34 +251,14 @@ public class LSPEclipseUtils {
 	}
 
 	/**
-	 * Applies a worksapce edit. It does simply change the underlying documents.
+	 * Applies a workspace edit, with all the edits of a file applied at once.
+	 * Files opened in a buffer get their document changed, the others are
+	 * rewritten directly; all files are saved in a single workspace operation.
 	 *
 	 * @param wsEdit
 	 */
 	public static void applyWorkspaceEdit(WorkspaceEdit wsEdit) {
-		CompositeChange change = new CompositeChange("LSP Workspace Edit"); //$NON-NLS-1$
-		for (java.util.Map.Entry<String, List<TextEdit>> edit : wsEdit.getChanges().entrySet()) {
-			String uri = edit.getKey();
-			IDocument document = LSPEclipseUtils.getDocument(LSPEclipseUtils.findResourceFor(uri));
-			for (TextEdit textEdit : edit.getValue()) {
-				try {
-					int offset = LSPEclipseUtils.toOffset(textEdit.getRange().getStart(), document);
-					int length = LSPEclipseUtils.toOffset(textEdit.getRange().getEnd(), document) - offset;
-					DocumentChange documentChange = new DocumentChange("Change in document " + uri, document); //$NON-NLS-1$
-					documentChange.initializeValidationData(new NullProgressMonitor());
-					documentChange.setEdit(new ReplaceEdit(offset, length, textEdit.getNewText()));
-					change.add(documentChange);
-				} catch (BadLocationException e) {
-					LanguageServerPlugin.logError(e);
-				}
-			}
-		}
-		PerformChangeOperation changeOperation = new PerformChangeOperation(change);
-		try {
-			ResourcesPlugin.getWorkspace().run(changeOperation, new NullProgressMonitor());
-		} catch (CoreException e) {
-			LanguageServerPlugin.logError(e);
-		}
+		WorkspaceEditApplier.apply(wsEdit);
 	}
 
 	public static URI toUri(IPath absolutePath) {
@@ -302,7 +266,7 @@ public class LSPEclipseUtils {
 	}
 
 	public static URI toUri(IResource resource) {
-		return toUri(resource.getLocation());
+		return ResourceUriResolver.getInstance().toUri(resource);
 	}
 
 	public static URI toUri(File file) {
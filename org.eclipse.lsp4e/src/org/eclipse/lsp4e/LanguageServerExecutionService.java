@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+
+/**
+ * Provides the executors used to dispatch JSON-RPC messages of language servers.
+ * Each language server gets its own executor, with its own queue and a bounded
+ * number of threads, so a busy server can't starve the others. Executors must be
+ * shut down when the language server stops. Outgoing messages of each
+ * connection are written by a dedicated thread, see {@link OutboundMessageQueue}.
+ * Usage metrics are aggregated over all executors and outbound queues.
+ */
+public class LanguageServerExecutionService {
+
+	private static final int MAX_THREADS_PER_SERVER = 4;
+	private static final long KEEP_ALIVE_SECONDS = 60;
+	private static final int MAX_CONNECTION_THREADS = 4;
+
+	private static LanguageServerExecutionService INSTANCE = null;
+
+	public static synchronized LanguageServerExecutionService getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new LanguageServerExecutionService();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Shuts down the instance, if it was created, typically when the plug-in stops.
+	 */
+	static synchronized void shutdownInstance() {
+		if (INSTANCE != null) {
+			INSTANCE.shutdown();
+			INSTANCE = null;
+		}
+	}
+
+	private final Set<ServerExecutor> executors = ConcurrentHashMap.newKeySet();
+	private final Set<OutboundMessageQueue> outboundQueues = ConcurrentHashMap.newKeySet();
+	private final AtomicLong completedTasks = new AtomicLong();
+	private final AtomicLong totalTaskLatencyNanos = new AtomicLong();
+	private final AtomicLong maxTaskLatencyNanos = new AtomicLong();
+	private final ThreadPoolExecutor connectionExecutor;
+
+	private LanguageServerExecutionService() {
+		this.connectionExecutor = new ThreadPoolExecutor(MAX_CONNECTION_THREADS, MAX_CONNECTION_THREADS, KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactoryImpl("connection")); //$NON-NLS-1$
+		this.connectionExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private static class TimedTask implements Runnable {
+		private final Runnable task;
+		private final long submitTime = System.nanoTime();
+
+		TimedTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			task.run();
+		}
+	}
+
+	private class ServerExecutor extends ThreadPoolExecutor {
+
+		ServerExecutor(String serverName) {
+			super(MAX_THREADS_PER_SERVER, MAX_THREADS_PER_SERVER, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), new ThreadFactoryImpl(serverName));
+			allowCoreThreadTimeOut(true);
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			super.execute(new TimedTask(command));
+		}
+
+		@Override
+		protected void beforeExecute(Thread t, Runnable r) {
+			super.beforeExecute(t, r);
+			if (r instanceof TimedTask) {
+				long latency = System.nanoTime() - ((TimedTask) r).submitTime;
+				totalTaskLatencyNanos.addAndGet(latency);
+				maxTaskLatencyNanos.accumulateAndGet(latency, Math::max);
+			}
+		}
+
+		@Override
+		protected void afterExecute(Runnable r, Throwable t) {
+			super.afterExecute(r, t);
+			completedTasks.incrementAndGet();
+		}
+
+		@Override
+		protected void terminated() {
+			super.terminated();
+			executors.remove(this);
+		}
+	}
+
+	private static class ThreadFactoryImpl implements ThreadFactory {
+		private final String serverName;
+		private final AtomicInteger count = new AtomicInteger();
+
+		ThreadFactoryImpl(String serverName) {
+			this.serverName = serverName;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "LSP4E " + serverName + " #" + count.incrementAndGet()); //$NON-NLS-1$ //$NON-NLS-2$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * @param serverName used to name the threads
+	 * @return a new executor for a language server connection, to be shut down
+	 *         when the connection is closed.
+	 */
+	public @NonNull ExecutorService createExecutor(@NonNull String serverName) {
+		ServerExecutor executor = new ServerExecutor(serverName);
+		executors.add(executor);
+		return executor;
+	}
+
+	/**
+	 * @return the executor starting language servers and connecting documents
+	 *         to them, which may block for a while, out of the UI thread and
+	 *         with a bounded number of threads
+	 */
+	public @NonNull Executor getConnectionExecutor() {
+		return this.connectionExecutor;
+	}
+
+	/**
+	 * @param serverName used to name the writer thread
+	 * @param consumer writes messages to the language server connection
+	 * @return a new queue whose messages are passed to the given consumer by a
+	 *         dedicated thread, in order, to be closed when the connection is
+	 *         closed.
+	 */
+	public @NonNull OutboundMessageQueue createOutboundQueue(@NonNull String serverName, @NonNull MessageConsumer consumer) {
+		return createOutboundQueue(serverName, consumer, null);
+	}
+
+	/**
+	 * @param failureHandler called with the queue when writing a message to
+	 *            the connection fails, typically to dispose the connection
+	 * @see #createOutboundQueue(String, MessageConsumer)
+	 */
+	public @NonNull OutboundMessageQueue createOutboundQueue(@NonNull String serverName, @NonNull MessageConsumer consumer,
+			@Nullable Consumer<OutboundMessageQueue> failureHandler) {
+		OutboundMessageQueue queue = new OutboundMessageQueue(serverName, consumer, failureHandler);
+		outboundQueues.add(queue);
+		return queue;
+	}
+
+	void outboundQueueClosed(OutboundMessageQueue queue) {
+		outboundQueues.remove(queue);
+	}
+
+	/**
+	 * Shuts down all executors and outbound queues, typically when the plug-in
+	 * stops. Language servers should be stopped first, as their shutdown
+	 * request is sent and answered through them.
+	 */
+	public void shutdown() {
+		connectionExecutor.shutdownNow();
+		for (ServerExecutor executor : executors) {
+			executor.shutdownNow();
+		}
+		for (OutboundMessageQueue queue : outboundQueues) {
+			queue.close();
+		}
+	}
+
+	/**
+	 * @return the number of threads currently running a task, over all language servers
+	 */
+	public int getActiveThreadCount() {
+		return executors.stream().mapToInt(ThreadPoolExecutor::getActiveCount).sum();
+	}
+
+	/**
+	 * @return the number of tasks waiting for a thread, over all language servers
+	 */
+	public int getQueueDepth() {
+		return executors.stream().mapToInt(executor -> executor.getQueue().size()).sum();
+	}
+
+	/**
+	 * @return the average time in milliseconds tasks waited before being run
+	 */
+	public long getAverageTaskLatency() {
+		long completed = completedTasks.get();
+		return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalTaskLatencyNanos.get() / completed);
+	}
+
+	/**
+	 * @return the maximum time in milliseconds a task waited before being run
+	 */
+	public long getMaxTaskLatency() {
+		return TimeUnit.NANOSECONDS.toMillis(maxTaskLatencyNanos.get());
+	}
+
+	/**
+	 * @return the number of messages waiting to be written, over all language servers
+	 */
+	public int getOutboundQueueDepth() {
+		return outboundQueues.stream().mapToInt(OutboundMessageQueue::getQueueDepth).sum();
+	}
+
+	/**
+	 * @return the longest time in milliseconds a message currently being
+	 *         written has been blocking its writer, over all language servers
+	 */
+	public long getCurrentWriteStall() {
+		return outboundQueues.stream().mapToLong(OutboundMessageQueue::getCurrentWriteStall).max().orElse(0);
+	}
+
+	/**
+	 * @return the longest time in milliseconds writing a single message took,
+	 *         over the running language servers
+	 */
+	public long getMaxWriteStall() {
+		return outboundQueues.stream().mapToLong(OutboundMessageQueue::getMaxWriteStall).max().orElse(0);
+	}
+
+	@Override
+	public String toString() {
+		return "LanguageServerExecutionService [executors=" + executors.size() //$NON-NLS-1$
+				+ ", activeThreads=" + getActiveThreadCount() //$NON-NLS-1$
+				+ ", queueDepth=" + getQueueDepth() //$NON-NLS-1$
+				+ ", averageLatency=" + getAverageTaskLatency() + "ms" //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", maxLatency=" + getMaxTaskLatency() + "ms" //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", outboundQueueDepth=" + getOutboundQueueDepth() //$NON-NLS-1$
+				+ ", maxWriteStall=" + getMaxWriteStall() + "ms]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+}
@@ -38,6 +38,12 @@ public class LanguageServerPlugin extends AbstractUIPlugin {
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		LanguageServiceAccessor.stopAll();
+		LanguageServerExecutionService.shutdownInstance();
+		ContentTypeCache.disposeInstance();
+		DocumentBindingCache.disposeInstance();
+		ResourceUriResolver.disposeInstance();
+		DocumentConnectionPolicy.disposeInstance();
 		plugin = null;
 		super.stop(context);
 	}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+public class LanguageServerPreferenceInitializer extends AbstractPreferenceInitializer {
+
+	@Override
+	public void initializeDefaultPreferences() {
+		IPreferenceStore store = LanguageServerPlugin.getDefault().getPreferenceStore();
+		store.setDefault(LanguageServerPrewarmer.PREWARM_ENABLED_PREF_KEY, true);
+		store.setDefault(LanguageServerPrewarmer.PREWARM_CONCURRENCY_PREF_KEY, 2);
+		store.setDefault(LanguageServerPrewarmer.PREWARM_CPU_BUDGET_PREF_KEY, 50);
+		store.setDefault(ProjectSpecificLanguageServerWrapper.KEEP_ALIVE_PREF_KEY, 30000L);
+		store.setDefault(ProjectSpecificLanguageServerWrapper.MAX_OPEN_DOCUMENTS_PREF_KEY, 200);
+		store.setDefault(LanguageServiceAccessor.MAX_RUNNING_SERVERS_PREF_KEY, 16);
+		store.setDefault(LargeDocumentPolicy.THRESHOLD_PREF_KEY, 5 * 1024 * 1024);
+		store.setDefault(LargeDocumentPolicy.MAX_DIAGNOSTICS_PREF_KEY, 1000);
+		store.setDefault(LargeDocumentPolicy.OUTLINE_REFRESH_DELAY_PREF_KEY, 2000L);
+	}
+
+}
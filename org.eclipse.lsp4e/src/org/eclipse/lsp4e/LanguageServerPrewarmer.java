@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobGroup;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.lsp4e.LanguageServersRegistry.LanguageServerDefinition;
+import org.eclipse.lsp4e.ui.Messages;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.ui.IStartup;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Remembers which language servers served documents of each project, and
+ * starts them in background after workbench startup, so the first interaction
+ * with a document doesn't have to wait for the language server to start and
+ * initialize. Only the servers used in the previous session are started, so
+ * servers and projects not used anymore are forgotten.
+ */
+public class LanguageServerPrewarmer implements IStartup {
+
+	public static final String PREWARM_ENABLED_PREF_KEY = "prewarm.enabled"; //$NON-NLS-1$
+	/**
+	 * Maximum number of language servers being started at the same time
+	 */
+	public static final String PREWARM_CONCURRENCY_PREF_KEY = "prewarm.concurrency"; //$NON-NLS-1$
+	/**
+	 * Percentage of the available processors the system load must stay under for
+	 * a language server to be started in background
+	 */
+	public static final String PREWARM_CPU_BUDGET_PREF_KEY = "prewarm.cpuBudget"; //$NON-NLS-1$
+
+	private static final String USED_SERVERS_NODE = "usedLanguageServers"; //$NON-NLS-1$
+	private static final String SEPARATOR = "\n"; //$NON-NLS-1$
+	private static final long BUSY_RETRY_DELAY = 5000;
+	private static final int MAX_ATTEMPTS = 12;
+
+	/**
+	 * Ids of the language servers used by each project in the previous session,
+	 * read once per session
+	 */
+	private static Map<String, List<String>> previousSessionUsage;
+	/**
+	 * Ids of the language servers used by each project in this session
+	 */
+	private static final Map<String, Set<String>> sessionUsage = new HashMap<>();
+
+	@Override
+	public void earlyStartup() {
+		IPreferenceStore store = LanguageServerPlugin.getDefault().getPreferenceStore();
+		if (!store.getBoolean(PREWARM_ENABLED_PREF_KEY)) {
+			return;
+		}
+		Job prewarmJob = new Job(Messages.prewarm_job) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				prewarm(getPreviousSessionUsage());
+				return Status.OK_STATUS;
+			}
+		};
+		prewarmJob.setSystem(true);
+		prewarmJob.setPriority(Job.DECORATE);
+		prewarmJob.schedule();
+	}
+
+	/**
+	 * Starts the given language servers of each project in background, within
+	 * the concurrency and CPU budgets
+	 */
+	static void prewarm(@NonNull Map<String, ? extends Collection<String>> usage) {
+		IPreferenceStore store = LanguageServerPlugin.getDefault().getPreferenceStore();
+		JobGroup group = new JobGroup(Messages.prewarm_job, Math.max(1, store.getInt(PREWARM_CONCURRENCY_PREF_KEY)), 0);
+		int cpuBudget = store.getInt(PREWARM_CPU_BUDGET_PREF_KEY);
+		for (Entry<String, ? extends Collection<String>> entry : usage.entrySet()) {
+			IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(entry.getKey());
+			if (!project.isAccessible()) {
+				continue;
+			}
+			for (String serverId : entry.getValue()) {
+				LanguageServerDefinition definition = LanguageServersRegistry.getInstance().getDefinition(serverId);
+				if (definition != null) {
+					Job startJob = createStartJob(project, definition, cpuBudget);
+					startJob.setJobGroup(group);
+					startJob.schedule();
+				}
+			}
+		}
+	}
+
+	private static Job createStartJob(@NonNull IProject project, @NonNull LanguageServerDefinition definition, int cpuBudget) {
+		Job startJob = new Job(NLS.bind(Messages.prewarm_startServer, definition.getLabel(), project.getName())) {
+			private int attempts = 0;
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				if (monitor.isCanceled() || !project.isAccessible()) {
+					return Status.CANCEL_STATUS;
+				}
+				if (!isUnderCpuBudget(cpuBudget)) {
+					// the server will be started on demand if the system stays busy
+					if (++attempts < MAX_ATTEMPTS) {
+						schedule(BUSY_RETRY_DELAY);
+					}
+					return Status.OK_STATUS;
+				}
+				try {
+					// stopped like any other idle server if no document gets connected
+					LanguageServiceAccessor.getLSWrapperForConnection(project, definition).scheduleIdleStop();
+				} catch (IOException e) {
+					LanguageServerPlugin.logError(e);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		startJob.setSystem(true);
+		startJob.setPriority(Job.DECORATE);
+		return startJob;
+	}
+
+	private static boolean isUnderCpuBudget(int cpuBudget) {
+		double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+		if (load < 0) { // not available on this platform
+			return true;
+		}
+		return load < Runtime.getRuntime().availableProcessors() * cpuBudget / 100.0;
+	}
+
+	/**
+	 * Reads the language servers used in the previous session, and forgets them,
+	 * so only the servers used in this session get started in the next one.
+	 *
+	 * @return the ids of the language servers used by each project in the previous session
+	 */
+	private static synchronized Map<String, List<String>> getPreviousSessionUsage() {
+		if (previousSessionUsage == null) {
+			previousSessionUsage = new HashMap<>();
+			IEclipsePreferences usedServers = getUsedServersNode();
+			try {
+				for (String projectName : usedServers.keys()) {
+					List<String> serverIds = new ArrayList<>(Arrays.asList(usedServers.get(projectName, "").split(SEPARATOR))); //$NON-NLS-1$
+					serverIds.remove(""); //$NON-NLS-1$
+					previousSessionUsage.put(projectName, serverIds);
+				}
+				usedServers.clear();
+				usedServers.flush();
+			} catch (BackingStoreException e) {
+				LanguageServerPlugin.logError(e);
+			}
+		}
+		return previousSessionUsage;
+	}
+
+	/**
+	 * Remembers that the given language server served a document of the given
+	 * project, so it is started in background in the next session. Only
+	 * persisted the first time in a session.
+	 */
+	static synchronized void recordUsage(@NonNull IProject project, @NonNull LanguageServerDefinition definition) {
+		// usage of the previous session must be read before it's overwritten
+		getPreviousSessionUsage();
+		Set<String> serverIds = sessionUsage.computeIfAbsent(project.getName(), name -> new LinkedHashSet<>());
+		if (!serverIds.add(definition.getId())) {
+			return;
+		}
+		IEclipsePreferences usedServers = getUsedServersNode();
+		usedServers.put(project.getName(), String.join(SEPARATOR, serverIds));
+		try {
+			usedServers.flush();
+		} catch (BackingStoreException e) {
+			LanguageServerPlugin.logError(e);
+		}
+	}
+
+	private static IEclipsePreferences getUsedServersNode() {
+		return (IEclipsePreferences) InstanceScope.INSTANCE.getNode(LanguageServerPlugin.PLUGIN_ID).node(USED_SERVERS_NODE);
+	}
+
+}
@@ -13,11 +13,14 @@ package org.eclipse.lsp4e;
 import java.io.IOException;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.CoreException;
@@ -52,14 +55,25 @@ public class LanguageServersRegistry {
 	private static final String CONTENT_TYPE_ATTRIBUTE = "contentType"; //$NON-NLS-1$
 	private static final String CLASS_ATTRIBUTE = "class"; //$NON-NLS-1$
 	private static final String LABEL_ATTRIBUTE = "label"; //$NON-NLS-1$
+	private static final String SINGLETON_ATTRIBUTE = "singleton"; //$NON-NLS-1$
 
 	public static abstract class LanguageServerDefinition {
 		private final @NonNull String id;
 		private final @NonNull String label;
+		private final boolean isSingleton;
 
 		public LanguageServerDefinition(@NonNull String id, @NonNull String label) {
+			this(id, label, false);
+		}
+
+		/**
+		 * @param isSingleton whether a single instance of the language server should serve
+		 *        all projects of the workspace, instead of one instance per project
+		 */
+		public LanguageServerDefinition(@NonNull String id, @NonNull String label, boolean isSingleton) {
 			this.id = id;
 			this.label = label;
+			this.isSingleton = isSingleton;
 		}
 
 		public String getId() {
@@ -70,6 +84,10 @@ public class LanguageServersRegistry {
 			return label;
 		}
 
+		public boolean isSingleton() {
+			return isSingleton;
+		}
+
 		public abstract StreamConnectionProvider createConnectionProvider();
 	}
 
@@ -77,7 +95,8 @@ public class LanguageServersRegistry {
 		private IConfigurationElement extension;
 
 		public ExtensionLanguageServerDefinition(IConfigurationElement element) {
-			super(element.getAttribute(ID_ATTRIBUTE), element.getAttribute(LABEL_ATTRIBUTE));
+			super(element.getAttribute(ID_ATTRIBUTE), element.getAttribute(LABEL_ATTRIBUTE),
+					Boolean.parseBoolean(element.getAttribute(SINGLETON_ATTRIBUTE)));
 			this.extension = element;
 		}
 
@@ -116,8 +135,14 @@ public class LanguageServersRegistry {
 		return INSTANCE;
 	}
 
-	private List<ContentTypeToLanguageServerDefinition> connections = new ArrayList<>();
+	private List<ContentTypeToLanguageServerDefinition> connections = new CopyOnWriteArrayList<>();
 	private IPreferenceStore preferenceStore;
+	/**
+	 * Index of content type ids to the definitions of servers applying to them, including the ones associated with
+	 * their base types. Replaced as a whole whenever associations change.
+	 */
+	private volatile ProvidersIndex providersIndex = new ProvidersIndex(Collections.emptyMap());
+	private volatile int generation;
 
 	private LanguageServersRegistry() {
 		this.preferenceStore = LanguageServerPlugin.getDefault().getPreferenceStore();
@@ -155,11 +180,58 @@ public class LanguageServersRegistry {
 			IContentType contentType = entry.getKey();
 			LanguageServerDefinition lsDefinition = servers.get(entry.getValue());
 			if (lsDefinition != null) {
-				registerAssociation(contentType, lsDefinition);
+				connections.add(new ContentTypeToLanguageServerDefinition(contentType, lsDefinition));
 			} else {
 				LanguageServerPlugin.logWarning("server '" + entry.getValue() + "' not available", null); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 		}
+		rebuildIndex();
+	}
+
+	/**
+	 * Definitions associated with each content type, followed by the ones associated with its base types, closest
+	 * first. Computed on first lookup of each content type, so content types contributed or defined after the
+	 * associations got indexed are found too.
+	 */
+	private static final class ProvidersIndex {
+		/**
+		 * Definitions directly associated with each content type id
+		 */
+		private final Map<String, List<LanguageServerDefinition>> directProviders;
+		private final Map<String, List<LanguageServerDefinition>> providers = new ConcurrentHashMap<>();
+
+		ProvidersIndex(Map<String, List<LanguageServerDefinition>> directProviders) {
+			this.directProviders = directProviders;
+		}
+
+		List<LanguageServerDefinition> get(IContentType contentType) {
+			if (this.directProviders.isEmpty()) {
+				return Collections.emptyList();
+			}
+			return this.providers.computeIfAbsent(contentType.getId(), id -> {
+				List<LanguageServerDefinition> res = new ArrayList<>();
+				for (IContentType type = contentType; type != null; type = type.getBaseType()) {
+					for (LanguageServerDefinition definition : this.directProviders.getOrDefault(type.getId(), Collections.emptyList())) {
+						if (!res.contains(definition)) {
+							res.add(definition);
+						}
+					}
+				}
+				return res.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(res);
+			});
+		}
+	}
+
+	private synchronized void rebuildIndex() {
+		Map<String, List<LanguageServerDefinition>> directProviders = new HashMap<>();
+		for (ContentTypeToLanguageServerDefinition mapping : this.connections) {
+			List<LanguageServerDefinition> providers = directProviders.computeIfAbsent(mapping.getKey().getId(), id -> new ArrayList<>());
+			if (!providers.contains(mapping.getValue())) {
+				providers.add(mapping.getValue());
+			}
+		}
+		this.providersIndex = new ProvidersIndex(directProviders);
+		this.generation++;
 	}
 
 	private void persistContentTypeToLaunchConfigurationMapping() {
@@ -181,26 +253,37 @@ public class LanguageServersRegistry {
 		}
 	}
 
+	/**
+	 * @return a number changing whenever associations of content types to language servers change
+	 */
+	int getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * @return the definitions of servers associated with the given content type or with one of its base types. The
+	 *         returned list is not modifiable.
+	 */
 	public List<LanguageServerDefinition> findProviderFor(final IContentType contentType) {
-		return connections.stream()
-			.filter(entry -> entry.getKey().equals(contentType))
-			.map(Entry::getValue)
-			.collect(Collectors.toList());
+		return this.providersIndex.get(contentType);
 	}
 
 	public void registerAssociation(@NonNull IContentType contentType, @NonNull ILaunchConfiguration launchConfig, @NonNull Set<String> launchMode) {
 		ContentTypeToLSPLaunchConfigEntry mapping = new ContentTypeToLSPLaunchConfigEntry(contentType, launchConfig, launchMode);
 		connections.add(mapping);
+		rebuildIndex();
 		persistContentTypeToLaunchConfigurationMapping();
 	}
 
 	public void registerAssociation(@NonNull IContentType contentType, @NonNull LanguageServerDefinition serverDefinition) {
 		connections.add(new ContentTypeToLanguageServerDefinition(contentType, serverDefinition));
+		rebuildIndex();
 	}
 
 	public void setAssociations(List<ContentTypeToLSPLaunchConfigEntry> wc) {
 		this.connections.removeIf(ContentTypeToLSPLaunchConfigEntry.class::isInstance);
 		this.connections.addAll(wc);
+		rebuildIndex();
 		persistContentTypeToLaunchConfigurationMapping();
 	}
 
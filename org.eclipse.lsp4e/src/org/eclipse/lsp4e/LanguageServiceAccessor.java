@@ -11,33 +11,45 @@
 package org.eclipse.lsp4e;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.Platform;
-import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.lsp4e.LanguageServersRegistry.LanguageServerDefinition;
 import org.eclipse.lsp4e.server.StreamConnectionProvider;
+import org.eclipse.lsp4e.ui.Messages;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.ServerCapabilities;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.services.LanguageServer;
+import org.eclipse.lsp4j.services.TextDocumentService;
 
 /**
  * The entry-point to retrieve a Language Server for a given resource/project.
@@ -46,11 +58,30 @@ import org.eclipse.lsp4j.services.LanguageServer;
  */
 public class LanguageServiceAccessor {
 
+	/**
+	 * Maximum number of running language servers, idle ones being stopped when it's exceeded. 0 for no limit.
+	 */
+	public static final String MAX_RUNNING_SERVERS_PREF_KEY = "server.maxRunning"; //$NON-NLS-1$
+
 	private LanguageServiceAccessor() {
 		// this class shouldn't be instantiated
 	}
 
-	private static Set<ProjectSpecificLanguageServerWrapper> projectServers = new HashSet<>();
+	/**
+	 * Wrappers serving a given project, by project then by language server definition id, completed once started.
+	 * Each one is started by the first thread requesting it, other threads requesting the same one wait for it while
+	 * lookups of other wrappers proceed. Reads don't lock.
+	 */
+	private static final Map<IProject, Map<String, CompletableFuture<ProjectSpecificLanguageServerWrapper>>> projectServers = new ConcurrentHashMap<>();
+	/**
+	 * Wrappers of singleton language servers, which serve all projects, by language server definition id.
+	 */
+	private static final Map<String, CompletableFuture<ProjectSpecificLanguageServerWrapper>> sharedServers = new ConcurrentHashMap<>();
+	/**
+	 * Connections of documents to their language servers being made in background, see
+	 * {@link #getLSPDocumentInfosForAsync(IDocument, Predicate)}
+	 */
+	private static final Map<IDocument, CompletableFuture<Collection<ProjectSpecificLanguageServerWrapper>>> pendingConnections = new ConcurrentHashMap<>();
 	private static Map<StreamConnectionProvider, LanguageServerDefinition> providersToLSDefinitions = new HashMap<>();
 
 	/**
@@ -63,7 +94,7 @@ public class LanguageServiceAccessor {
 		private final @NonNull ProjectSpecificLanguageServerWrapper wrapper;
 		private final @NonNull LanguageServer server;
 
-		private LSPDocumentInfo(@NonNull URI fileUri, @NonNull IDocument document, @NonNull ProjectSpecificLanguageServerWrapper wrapper, @NonNull LanguageServer server) {
+		LSPDocumentInfo(@NonNull URI fileUri, @NonNull IDocument document, @NonNull ProjectSpecificLanguageServerWrapper wrapper, @NonNull LanguageServer server) {
 			this.fileUri = fileUri;
 			this.document = document;
 			this.wrapper = wrapper;
@@ -82,7 +113,15 @@ public class LanguageServiceAccessor {
 			return this.fileUri;
 		}
 
+		/**
+		 * Sends pending changes of the document first, so requests sent to the
+		 * returned server are answered according to the latest content.
+		 */
 		public @NonNull LanguageServer getLanguageClient() {
+			DocumentContentSynchronizer synchronizer = getUsedSynchronizer();
+			if (synchronizer != null) {
+				synchronizer.flush();
+			}
 			return this.server;
 		}
 
@@ -93,6 +132,62 @@ public class LanguageServiceAccessor {
 		public boolean isActive() {
 			return this.wrapper.isActive();
 		}
+
+		/**
+		 * Sends pending changes of the document, then returns the version of the
+		 * document requests sent afterwards are computed for.
+		 *
+		 * @return the version, or -1 if the document isn't connected to the language server
+		 */
+		public int getVersion() {
+			DocumentContentSynchronizer synchronizer = getUsedSynchronizer();
+			return synchronizer != null ? synchronizer.flushAndGetVersion() : -1;
+		}
+
+		/**
+		 * @return the synchronizer of the document, marked as used as a request is about to be sent, so documents
+		 *         only queried and never modified aren't the first ones closed when too many are open
+		 */
+		private @Nullable DocumentContentSynchronizer getUsedSynchronizer() {
+			DocumentContentSynchronizer synchronizer = this.wrapper.getSynchronizer(this.fileUri);
+			if (synchronizer != null) {
+				synchronizer.touch();
+			}
+			return synchronizer;
+		}
+
+		/**
+		 * @return whether the document wasn't changed since the given version
+		 */
+		public boolean isCurrent(int version) {
+			DocumentContentSynchronizer synchronizer = this.wrapper.getSynchronizer(this.fileUri);
+			return version < 0 || synchronizer == null || synchronizer.isCurrent(version);
+		}
+
+		/**
+		 * @return the given range, computed for the given version of the document, in the
+		 *         current content of the document, or <code>null</code> if it can't be remapped
+		 */
+		public @Nullable Range remap(@NonNull Range range, int version) {
+			DocumentContentSynchronizer synchronizer = this.wrapper.getSynchronizer(this.fileUri);
+			if (version < 0 || synchronizer == null) {
+				return range;
+			}
+			Position start = synchronizer.remap(range.getStart(), version);
+			Position end = synchronizer.remap(range.getEnd(), version);
+			return start != null && end != null ? new Range(start, end) : null;
+		}
+
+		/**
+		 * Sends a request about the document, tagged with the current version of
+		 * the document. Responses computed for a version which got superseded
+		 * meanwhile are discarded: the returned future completes with
+		 * <code>null</code> instead.
+		 */
+		public <T> @NonNull CompletableFuture<T> sendRequest(@NonNull Function<TextDocumentService, CompletableFuture<T>> request) {
+			int version = getVersion();
+			return request.apply(this.server.getTextDocumentService()).thenApply(response -> isCurrent(version) ? response : null);
+		}
 	}
 
 	/**
@@ -104,8 +199,13 @@ public class LanguageServiceAccessor {
 	 */
 	@Deprecated
 	@Nullable public static LSPDocumentInfo getLSPDocumentInfoFor(@NonNull IDocument document, @Nullable Predicate<ServerCapabilities> capabilityRequest) {
-		final IFile file = LSPEclipseUtils.getFile(document);
 		final @NonNull Predicate<ServerCapabilities> request = capabilityRequest != null ? capabilityRequest : capabilities -> Boolean.TRUE;
+		DocumentBindingCache.Binding binding = DocumentBindingCache.getInstance().get(document);
+		if (binding != null) {
+			List<@NonNull LSPDocumentInfo> infos = binding.getInfos(document, request);
+			return infos.isEmpty() ? null : infos.get(0);
+		}
+		final IFile file = LSPEclipseUtils.getFile(document);
 		if (file != null && file.exists()) {
 			URI fileUri = LSPEclipseUtils.toUri(file);
 			try {
@@ -115,7 +215,7 @@ public class LanguageServiceAccessor {
 					wrapper.connect(file.getLocation(), document);
 					@Nullable
 					LanguageServer server = wrapper.getServer();
-					if (server != null) {
+					if (server != null && wrapper.matchesCapabilities(request)) {
 						return new LSPDocumentInfo(fileUri, document, wrapper, server);
 					}
 				}
@@ -139,7 +239,16 @@ public class LanguageServiceAccessor {
 				LanguageServerPlugin.logError(e);
 			}
 		});
-		return wrappers.stream().map(ProjectSpecificLanguageServerWrapper::getServer).collect(Collectors.toList());
+		List<LanguageServer> servers = new ArrayList<>();
+		for (ProjectSpecificLanguageServerWrapper wrapper : wrappers) {
+			LanguageServer server = wrapper.getServer();
+			// capabilities are known once getServer() returns
+			if (server != null && wrapper.matchesCapabilities(request)) {
+				flushDocumentChanges(wrapper, file);
+				servers.add(server);
+			}
+		}
+		return servers;
 	}
 
 	/**
@@ -152,11 +261,24 @@ public class LanguageServiceAccessor {
 		ProjectSpecificLanguageServerWrapper wrapper = getLSWrapperForConnection(file.getProject(), lsDefinition);
 		if (wrapper != null) {
 			wrapper.connect(file.getLocation(), null);
-			return wrapper.getServer();
+			LanguageServer server = wrapper.getServer();
+			flushDocumentChanges(wrapper, file);
+			return server;
 		}
 		return null;
 	}
 
+	/**
+	 * Sends pending changes of the document of the file, so requests sent about it are answered according to its
+	 * latest content
+	 */
+	private static void flushDocumentChanges(@NonNull ProjectSpecificLanguageServerWrapper wrapper, @NonNull IFile file) {
+		DocumentContentSynchronizer synchronizer = wrapper.getSynchronizer(LSPEclipseUtils.toUri(file));
+		if (synchronizer != null) {
+			synchronizer.flush();
+		}
+	}
+
 	@NonNull private static Collection<ProjectSpecificLanguageServerWrapper> getLSWrappers(@NonNull IFile file, @NonNull Predicate<ServerCapabilities> request) throws IOException {
 		LinkedHashSet<ProjectSpecificLanguageServerWrapper> res = new LinkedHashSet<>();
 		IProject project = file.getProject();
@@ -167,27 +289,10 @@ public class LanguageServiceAccessor {
 		res.addAll(getMatchingStartedWrappers(file, request));
 
 		// look for running language servers via content-type
-		IContentType[] fileContentTypes = null;
-		try (InputStream contents = file.getContents()) {
-			fileContentTypes = Platform.getContentTypeManager().findContentTypesFor(contents, file.getName()); //TODO consider using document as inputstream
-		} catch (CoreException e) {
-			LanguageServerPlugin.logError(e);
-			return res;
-		}
-
-		for (IContentType contentType : fileContentTypes) {
-			if (contentType == null) {
-				continue;
-			}
-			for (LanguageServerDefinition serverDefinition : LanguageServersRegistry.getInstance().findProviderFor(contentType)) {
-				if (serverDefinition != null) {
-					ProjectSpecificLanguageServerWrapper wrapper = getLSWrapperForConnection(project, serverDefinition);
-					if (request == null
-						|| wrapper.getServerCapabilities() == null /* null check is workaround for https://github.com/TypeFox/ls-api/issues/47 */
-						|| request.test(wrapper.getServerCapabilities())) {
-						res.add(wrapper);
-					}
-				}
+		for (LanguageServerDefinition serverDefinition : ContentTypeCache.getInstance().getLanguageServerDefinitions(file)) {
+			ProjectSpecificLanguageServerWrapper wrapper = getLSWrapperForConnection(project, serverDefinition);
+			if (wrapper.matchesCapabilities(request)) {
+				res.add(wrapper);
 			}
 		}
 		return res;
@@ -203,64 +308,159 @@ public class LanguageServiceAccessor {
 	 * @throws IOException
 	 */
 	public static ProjectSpecificLanguageServerWrapper getLSWrapperForConnection(@NonNull IProject project, @NonNull LanguageServerDefinition serverDefinition) throws IOException {
-		ProjectSpecificLanguageServerWrapper wrapper = null;
+		IProject servedProject = serverDefinition.isSingleton() ? null : project;
+		Map<String, CompletableFuture<ProjectSpecificLanguageServerWrapper>> servers = servedProject == null ? sharedServers
+				: projectServers.computeIfAbsent(servedProject, p -> new ConcurrentHashMap<>());
+		String key = serverDefinition.getId();
+		CompletableFuture<ProjectSpecificLanguageServerWrapper> wrapperStart = new CompletableFuture<>();
+		CompletableFuture<ProjectSpecificLanguageServerWrapper> existingStart = servers.putIfAbsent(key, wrapperStart);
+		if (existingStart != null) {
+			return waitForStart(existingStart);
+		}
 
-		synchronized(projectServers) {
-			for (ProjectSpecificLanguageServerWrapper startedWrapper : getStartedLSWrappers(project)) {
-				if (startedWrapper.serverDefinition.equals(serverDefinition)) {
-					wrapper = startedWrapper;
-					break;
-				}
-			}
-			if (wrapper == null) {
-				wrapper = new ProjectSpecificLanguageServerWrapper(project, serverDefinition);
-				wrapper.start();
+		ProjectSpecificLanguageServerWrapper wrapper = new ProjectSpecificLanguageServerWrapper(servedProject, serverDefinition);
+		try {
+			wrapper.start();
+		} catch (IOException | RuntimeException e) {
+			servers.remove(key, wrapperStart);
+			wrapperStart.completeExceptionally(e);
+			throw e;
+		}
+		wrapperStart.complete(wrapper);
+		scheduleIdleServersEviction(wrapper);
+		return wrapper;
+	}
+
+	/**
+	 * Stops the least recently used idle language servers in a job, as stopping waits for their shutdown, while
+	 * callers may be in the UI thread
+	 */
+	private static void scheduleIdleServersEviction(@NonNull ProjectSpecificLanguageServerWrapper justUsed) {
+		Job job = new Job(Messages.evictIdleLanguageServers_job) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				getIdleServersToEvict(justUsed).forEach(ProjectSpecificLanguageServerWrapper::stopIfIdle);
+				return Status.OK_STATUS;
 			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
 
-			if (wrapper != null) {
-				projectServers.add(wrapper);
+	private static ProjectSpecificLanguageServerWrapper waitForStart(CompletableFuture<ProjectSpecificLanguageServerWrapper> wrapperStart) throws IOException {
+		try {
+			return wrapperStart.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
 			}
+			throw new IOException(e.getCause());
 		}
-		return wrapper;
 	}
 
-	private static @NonNull List<ProjectSpecificLanguageServerWrapper> getStartedLSWrappers(@NonNull IProject project) {
-		return projectServers.stream().filter(wrapper -> wrapper.project.equals(project)).collect(Collectors.toList());
+	/**
+	 * @return the wrapper for the given project and definition if it's done starting, without starting it nor waiting
+	 *         for it
+	 */
+	private static @Nullable ProjectSpecificLanguageServerWrapper getStartedWrapper(@NonNull IProject project, @NonNull LanguageServerDefinition serverDefinition) {
+		Map<String, CompletableFuture<ProjectSpecificLanguageServerWrapper>> servers = serverDefinition.isSingleton() ? sharedServers : projectServers.get(project);
+		CompletableFuture<ProjectSpecificLanguageServerWrapper> wrapperStart = servers != null ? servers.get(serverDefinition.getId()) : null;
+		return wrapperStart != null && isStarted(wrapperStart) ? wrapperStart.join() : null;
+	}
+
+	/**
+	 * Stops all started language servers, typically when the plug-in stops.
+	 */
+	static void stopAll() {
+		pendingConnections.clear();
+		getStartedWrappers().forEach(ProjectSpecificLanguageServerWrapper::stop);
+		sharedServers.clear();
+		projectServers.clear();
+	}
+
+	private static boolean isStarted(CompletableFuture<ProjectSpecificLanguageServerWrapper> wrapperStart) {
+		return wrapperStart.isDone() && !wrapperStart.isCompletedExceptionally();
+	}
+
+	/**
+	 * @return the wrappers which are done starting, without waiting for the ones being started
+	 */
+	private static Stream<ProjectSpecificLanguageServerWrapper> getStartedWrappers() {
+		return Stream.concat(sharedServers.values().stream(),
+				projectServers.values().stream().flatMap(servers -> servers.values().stream()))
+				.filter(LanguageServiceAccessor::isStarted)
+				.map(CompletableFuture::join);
+	}
+
+	/**
+	 * @return the wrappers which are done starting and can serve the given project, without waiting for the ones
+	 *         being started
+	 */
+	private static Stream<ProjectSpecificLanguageServerWrapper> getStartedWrappers(@NonNull IProject project) {
+		Map<String, CompletableFuture<ProjectSpecificLanguageServerWrapper>> servers = projectServers.get(project);
+		Stream<CompletableFuture<ProjectSpecificLanguageServerWrapper>> wrapperStarts = sharedServers.values().stream();
+		if (servers != null) {
+			wrapperStarts = Stream.concat(wrapperStarts, servers.values().stream());
+		}
+		return wrapperStarts
+				.filter(LanguageServiceAccessor::isStarted)
+				.map(CompletableFuture::join);
+	}
+
+	/**
+	 * @return the least recently used idle language servers to stop so the number of running
+	 *         language servers doesn't exceed the limit
+	 */
+	private static List<ProjectSpecificLanguageServerWrapper> getIdleServersToEvict(@NonNull ProjectSpecificLanguageServerWrapper justUsed) {
+		int maxRunningServers = LanguageServerPlugin.getDefault().getPreferenceStore().getInt(MAX_RUNNING_SERVERS_PREF_KEY);
+		if (maxRunningServers <= 0) {
+			return Collections.emptyList();
+		}
+		long running = getStartedWrappers().filter(ProjectSpecificLanguageServerWrapper::isActive).count();
+		if (running <= maxRunningServers) {
+			return Collections.emptyList();
+		}
+		return getStartedWrappers()
+				.filter(wrapper -> wrapper != justUsed && wrapper.isIdle())
+				.sorted(Comparator.comparingLong(ProjectSpecificLanguageServerWrapper::getLastUsed))
+				.limit(running - maxRunningServers)
+				.collect(Collectors.toList());
 	}
 
 	private static Collection<ProjectSpecificLanguageServerWrapper> getMatchingStartedWrappers(@NonNull IFile file,
 	       @NonNull Predicate<ServerCapabilities> request) {
 		final IProject project = file.getProject();
 
-		synchronized(projectServers) {
-			return projectServers.stream()
-				.filter(wrapper -> wrapper.project.equals(project))
-				.filter(wrapper -> wrapper.getServerCapabilities() == null || request.test(wrapper.getServerCapabilities()))
-				.filter(wrapper -> wrapper.isConnectedTo(file.getLocation()))
-				.collect(Collectors.toList());
-		}
+		return getStartedWrappers(project)
+			.filter(wrapper -> wrapper.matchesCapabilities(request))
+			.filter(wrapper -> wrapper.isConnectedTo(file.getLocation()))
+			.collect(Collectors.toList());
 	}
 
 	/**
-	 * Gets list of LS initialized for given project.
+	 * Gets list of LS initialized for given project. Language servers which aren't running or still initializing are
+	 * skipped, none gets started.
 	 *
 	 * @param project
 	 * @param request
 	 * @return list of Language Servers
 	 */
 	@NonNull public static List<@NonNull LanguageServer> getLanguageServers(@NonNull IProject project, Predicate<ServerCapabilities> request) {
+		// only running servers are considered, filtering doesn't start nor wait for any
 		List<@NonNull LanguageServer> serverInfos = new ArrayList<>();
-		for (ProjectSpecificLanguageServerWrapper wrapper : projectServers) {
-			@Nullable LanguageServer server = wrapper.getServer();
-			if (server == null) {
-				continue;
+		getStartedWrappers(project).forEach(wrapper -> {
+			ServerCapabilitiesDescriptor descriptor = wrapper.getCapabilitiesDescriptor();
+			if (descriptor == null || (request != null && !descriptor.supports(request))) {
+				return;
 			}
-			if ((request == null
-			    || wrapper.getServerCapabilities() == null /* null check is workaround for https://github.com/TypeFox/ls-api/issues/47 */
-			    || request.test(wrapper.getServerCapabilities()))) {
+			@Nullable LanguageServer server = wrapper.getInitializedServer();
+			if (server != null) {
 				serverInfos.add(server);
 			}
-		}
+		});
 		return serverInfos;
 	}
 
@@ -269,6 +469,10 @@ public class LanguageServiceAccessor {
 	}
 
 	@NonNull public static List<LSPDocumentInfo> getLSPDocumentInfosFor(@NonNull IDocument document, @NonNull Predicate<ServerCapabilities> capabilityRequest) {
+		DocumentBindingCache.Binding binding = DocumentBindingCache.getInstance().get(document);
+		if (binding != null) {
+			return new ArrayList<>(binding.getInfos(document, capabilityRequest));
+		}
 		final IFile file = LSPEclipseUtils.getFile(document);
 		URI fileUri = null;
 		if (file != null && file.exists()) {
@@ -279,7 +483,7 @@ public class LanguageServiceAccessor {
 					wrapper.connect(file.getLocation(), document);
 					@Nullable
 					LanguageServer server = wrapper.getServer();
-					if (server != null) {
+					if (server != null && wrapper.matchesCapabilities(capabilityRequest)) {
 						res.add(new LSPDocumentInfo(fileUri, document, wrapper, server));
 					}
 				}
@@ -295,4 +499,101 @@ public class LanguageServiceAccessor {
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Retrieves the language servers for the given document without blocking the calling thread. When all of them are
+	 * already running and initialized, the returned future is already completed; otherwise language servers get
+	 * started, connected to the document and initialized by a bounded pool of background threads, see
+	 * {@link LanguageServerExecutionService#getConnectionExecutor()}. UI code which can't wait can use
+	 * <code>getNow(Collections.emptyList())</code> to only consider language servers which are ready.
+	 *
+	 * @param document
+	 * @param capabilityRequest
+	 * @return a future completed with the infos of the language servers supporting the request
+	 */
+	@NonNull public static CompletableFuture<@NonNull List<@NonNull LSPDocumentInfo>> getLSPDocumentInfosForAsync(@Nullable IDocument document, @NonNull Predicate<ServerCapabilities> capabilityRequest) {
+		if (document == null) {
+			return CompletableFuture.completedFuture(Collections.emptyList());
+		}
+		DocumentBindingCache.Binding binding = DocumentBindingCache.getInstance().get(document);
+		if (binding != null) {
+			return CompletableFuture.completedFuture(binding.getInfos(document, capabilityRequest));
+		}
+		final IFile file = LSPEclipseUtils.getFile(document);
+		if (file == null || !file.exists()) {
+			return CompletableFuture.completedFuture(Collections.emptyList());
+		}
+		final URI fileUri = LSPEclipseUtils.toUri(file);
+		binding = getReadyBinding(file, fileUri, document);
+		if (binding != null) {
+			return CompletableFuture.completedFuture(binding.getInfos(document, capabilityRequest));
+		}
+		// concurrent lookups for the same document share a single connection, made with all its servers
+		CompletableFuture<Collection<ProjectSpecificLanguageServerWrapper>> connection = pendingConnections.computeIfAbsent(document,
+				key -> CompletableFuture.supplyAsync(() -> {
+					try {
+						Collection<ProjectSpecificLanguageServerWrapper> wrappers = getLSWrappers(file, capabilities -> true);
+						for (ProjectSpecificLanguageServerWrapper wrapper : wrappers) {
+							wrapper.connect(file.getLocation(), document);
+						}
+						return wrappers;
+					} catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				}, LanguageServerExecutionService.getInstance().getConnectionExecutor()));
+		connection.whenComplete((wrappers, error) -> pendingConnections.remove(document, connection));
+		return connection.thenCompose(wrappers -> {
+			List<CompletableFuture<@Nullable LSPDocumentInfo>> infos = new ArrayList<>(wrappers.size());
+			for (ProjectSpecificLanguageServerWrapper wrapper : wrappers) {
+				infos.add(wrapper.getCapabilitiesDescriptorAsync().thenApply(descriptor -> {
+					if (descriptor == null || !descriptor.supports(capabilityRequest)) {
+						return null;
+					}
+					// may run in the thread reading responses, so it must not wait for the wrapper lock
+					LanguageServer server = wrapper.getInitializedServer();
+					return server != null ? new LSPDocumentInfo(fileUri, document, wrapper, server) : null;
+				}));
+			}
+			return CompletableFuture.allOf(infos.toArray(new CompletableFuture[infos.size()]))
+					.thenApply(v -> infos.stream()
+							.map(CompletableFuture::join)
+							.filter(Objects::nonNull)
+							.collect(Collectors.toList()));
+		});
+	}
+
+	/**
+	 * Binds the document to the language servers of the file if all of them are already running, initialized and
+	 * connected to the document, which can be checked without blocking.
+	 *
+	 * @return the binding, or <code>null</code> if some language servers aren't ready yet
+	 */
+	@Nullable private static DocumentBindingCache.Binding getReadyBinding(@NonNull IFile file, @NonNull URI fileUri, @NonNull IDocument document) {
+		// created before resolving, so it gets invalidated by any concurrent server state change
+		DocumentBindingCache.BindingBuilder builder = DocumentBindingCache.getInstance().newBinding(fileUri);
+		IProject project = file.getProject();
+		Set<ProjectSpecificLanguageServerWrapper> wrappers = new LinkedHashSet<>();
+		getStartedWrappers(project)
+				.filter(wrapper -> wrapper.isConnectedTo(file.getLocation()))
+				.forEach(wrappers::add);
+		for (LanguageServerDefinition serverDefinition : ContentTypeCache.getInstance().getLanguageServerDefinitions(file)) {
+			ProjectSpecificLanguageServerWrapper wrapper = getStartedWrapper(project, serverDefinition);
+			if (wrapper == null) {
+				return null;
+			}
+			wrappers.add(wrapper);
+		}
+		for (ProjectSpecificLanguageServerWrapper wrapper : wrappers) {
+			ServerCapabilitiesDescriptor descriptor = wrapper.getCapabilitiesDescriptor();
+			if (descriptor == null || !wrapper.isActive() || !wrapper.isConnectedTo(file.getLocation())) {
+				return null;
+			}
+			LanguageServer server = wrapper.getInitializedServer();
+			if (server == null) {
+				return null;
+			}
+			builder.add(wrapper, server, descriptor);
+		}
+		return builder.bind(document);
+	}
+
 }
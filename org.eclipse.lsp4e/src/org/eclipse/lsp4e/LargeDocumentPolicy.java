@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.nio.charset.Charset;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Tells whether documents are large enough to be handled with a reduced-cost
+ * profile: changes are sent less often and incrementally whenever the server
+ * allows it, the outline is refreshed less often, diagnostics are capped and
+ * document links are computed in background instead of being waited for.
+ * <p>
+ * The threshold is a number of characters, configurable per content type with
+ * the {@link #THRESHOLD_PREF_KEY} key suffixed with <code>.</code> and the
+ * content type id; base content types are used when a content type has no
+ * threshold of its own.
+ */
+public final class LargeDocumentPolicy {
+
+	/**
+	 * Number of characters above which a document is large, 0 to disable
+	 */
+	public static final String THRESHOLD_PREF_KEY = "largeDocument.threshold"; //$NON-NLS-1$
+	/**
+	 * Maximum number of diagnostics turned into markers for a large document
+	 */
+	public static final String MAX_DIAGNOSTICS_PREF_KEY = "largeDocument.maxDiagnostics"; //$NON-NLS-1$
+	/**
+	 * Minimum time in milliseconds between two refreshes of the outline of a large document
+	 */
+	public static final String OUTLINE_REFRESH_DELAY_PREF_KEY = "largeDocument.outlineRefreshDelay"; //$NON-NLS-1$
+
+	private LargeDocumentPolicy() {
+		// only static methods
+	}
+
+	/**
+	 * @return the number of characters above which a document with the given
+	 *         file name is large, 0 if there's no limit
+	 */
+	public static int getThreshold(@NonNull String fileName) {
+		IPreferenceStore store = LanguageServerPlugin.getDefault().getPreferenceStore();
+		IContentType contentType = Platform.getContentTypeManager().findContentTypeFor(fileName);
+		while (contentType != null) {
+			String key = THRESHOLD_PREF_KEY + '.' + contentType.getId();
+			if (store.contains(key)) {
+				return store.getInt(key);
+			}
+			contentType = contentType.getBaseType();
+		}
+		return store.getInt(THRESHOLD_PREF_KEY);
+	}
+
+	/**
+	 * @return whether the document, whose file has the given name, is large
+	 */
+	public static boolean isLarge(@Nullable IDocument document, @NonNull String fileName) {
+		if (document == null) {
+			return false;
+		}
+		int threshold = getThreshold(fileName);
+		return threshold > 0 && document.getLength() > threshold;
+	}
+
+	/**
+	 * @return whether the document, which must be the one of a file buffer, is large
+	 */
+	public static boolean isLarge(@Nullable IDocument document) {
+		if (document == null) {
+			return false;
+		}
+		ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(document);
+		if (buffer == null || buffer.getLocation() == null || buffer.getLocation().lastSegment() == null) {
+			return false;
+		}
+		return isLarge(document, buffer.getLocation().lastSegment());
+	}
+
+	/**
+	 * @return whether the file is large, according to its document if it's
+	 *         opened in a buffer; otherwise according to the number of
+	 *         characters estimated from its size on disk and the average
+	 *         number of bytes per character of its charset
+	 */
+	public static boolean isLarge(@NonNull IFile file) {
+		ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+		if (buffer != null) {
+			return isLarge(buffer.getDocument(), file.getName());
+		}
+		int threshold = getThreshold(file.getName());
+		IPath location = file.getLocation();
+		if (threshold <= 0 || location == null) {
+			return false;
+		}
+		long size = location.toFile().length();
+		// characters take at least a byte, no need to look for the charset of smaller files
+		return size > threshold && size / getAverageBytesPerChar(file) > threshold;
+	}
+
+	private static float getAverageBytesPerChar(@NonNull IFile file) {
+		try {
+			return Charset.forName(file.getCharset()).newEncoder().averageBytesPerChar();
+		} catch (CoreException | IllegalArgumentException | UnsupportedOperationException e) {
+			// unknown or decode only charset
+			return 1;
+		}
+	}
+
+	public static int getMaxDiagnostics() {
+		return LanguageServerPlugin.getDefault().getPreferenceStore().getInt(MAX_DIAGNOSTICS_PREF_KEY);
+	}
+
+	public static long getOutlineRefreshDelay() {
+		return LanguageServerPlugin.getDefault().getPreferenceStore().getLong(OUTLINE_REFRESH_DELAY_PREF_KEY);
+	}
+
+}
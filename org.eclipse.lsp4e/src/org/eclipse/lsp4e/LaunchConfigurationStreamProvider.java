@@ -10,87 +10,318 @@
  *******************************************************************************/
 package org.eclipse.lsp4e;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.DebugPlugin;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.ILaunchConfigurationType;
+import org.eclipse.debug.core.ILaunchConfigurationWorkingCopy;
 import org.eclipse.debug.core.ILaunchManager;
 import org.eclipse.debug.core.IStreamListener;
 import org.eclipse.debug.core.model.IProcess;
 import org.eclipse.debug.core.model.IStreamMonitor;
 import org.eclipse.debug.core.model.RuntimeProcess;
+import org.eclipse.debug.ui.IDebugUIConstants;
 import org.eclipse.lsp4e.server.StreamConnectionProvider;
+import org.eclipse.ui.console.MessageConsole;
+import org.eclipse.ui.console.MessageConsoleStream;
 
 /**
  * Access and control IO streams from a Launch Configuration to connect
  * them to language server protocol client.
+ *
+ * By default, the launch doesn't capture the output and the raw stdin/stdout
+ * of the process are directly handed to the client, so bytes reach it as they
+ * were written; console output is then only a sample of the traffic, when the
+ * launch configuration allocates a console. Launch configurations setting
+ * {@link #ATTR_ATTACH_TO_PROCESS_STREAMS} to <code>false</code> have their
+ * output read through the console {@link IStreamMonitor} instead.
  */
 public class LaunchConfigurationStreamProvider implements StreamConnectionProvider  {
 
-	private StreamProxyInputStream inputStream;
+	/**
+	 * Launch configuration attribute telling whether to directly use the
+	 * process streams, <code>true</code> by default. Ignored when the
+	 * launch configuration doesn't capture output, which can then only be
+	 * read from process streams.
+	 */
+	public static final String ATTR_ATTACH_TO_PROCESS_STREAMS = LanguageServerPlugin.PLUGIN_ID + ".attachToProcessStreams"; //$NON-NLS-1$
+
+	private InputStream inputStream;
 	private OutputStream outputStream;
 	private ILaunch launch;
 	private IProcess process;
 	private ILaunchConfiguration launchConfiguration;
 	private Set<String> launchModes;
+	private final boolean attachToProcessStreams;
+	private MessageConsole mirrorConsole;
 
+	/**
+	 * Bridges the console output of the launched process to an {@link InputStream}.
+	 * Received bytes are stored in a fixed-size ring buffer: writers block while the
+	 * buffer is full (backpressure to the stream monitor) and readers are woken up as
+	 * soon as some bytes are available.
+	 */
 	protected static class StreamProxyInputStream extends InputStream implements IStreamListener {
 
-		private ConcurrentLinkedQueue<Byte> queue = new ConcurrentLinkedQueue<>();
+		public static final int DEFAULT_CAPACITY = 64 * 1024;
+		private static final long TERMINATION_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+		private final byte[] buffer;
+		private int readIndex = 0;
+		private int count = 0;
+		private boolean closed = false;
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition notEmpty = lock.newCondition();
+		private final Condition notFull = lock.newCondition();
 		private IProcess process;
 
 		public StreamProxyInputStream(IProcess process) {
+			this(process, DEFAULT_CAPACITY);
+		}
+
+		public StreamProxyInputStream(IProcess process, int capacity) {
+			Assert.isLegal(capacity > 0, "capacity must be positive"); //$NON-NLS-1$
 			this.process = process;
+			this.buffer = new byte[capacity];
 		}
 
 		@Override
 		public void streamAppended(String text, IStreamMonitor monitor) {
 			byte[] bytes = text.getBytes(Charset.defaultCharset());
-			List<Byte> bytesAsList = new ArrayList<>(bytes.length);
-			for (byte b : bytes) {
-				bytesAsList.add(b);
+			try {
+				write(bytes, 0, bytes.length);
+			} catch (InterruptedIOException e) {
+				LanguageServerPlugin.logError(e);
+			}
+		}
+
+		/**
+		 * Appends bytes to the buffer, blocking while it is full.
+		 * Bytes written after the stream was closed are discarded.
+		 */
+		protected void write(byte[] bytes, int offset, int length) throws InterruptedIOException {
+			lock.lock();
+			try {
+				while (length > 0) {
+					while (count == buffer.length && !closed) {
+						notFull.await();
+					}
+					if (closed) {
+						return;
+					}
+					int writeIndex = (readIndex + count) % buffer.length;
+					int chunk = Math.min(length, Math.min(buffer.length - count, buffer.length - writeIndex));
+					System.arraycopy(bytes, offset, buffer, writeIndex, chunk);
+					count += chunk;
+					offset += chunk;
+					length -= chunk;
+					notEmpty.signal();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} finally {
+				lock.unlock();
 			}
-			queue.addAll(bytesAsList);
 		}
 
 		@Override
 		public int read() throws IOException {
-			while (queue.isEmpty()) {
-				if (this.process.isTerminated()) {
+			lock.lock();
+			try {
+				if (!awaitData()) {
+					return -1;
+				}
+				int res = buffer[readIndex] & 0xFF;
+				readIndex = (readIndex + 1) % buffer.length;
+				count--;
+				notFull.signal();
+				return res;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || len > b.length - off) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (len == 0) {
+				return 0;
+			}
+			lock.lock();
+			try {
+				if (!awaitData()) {
 					return -1;
 				}
-				try {
-					Thread.sleep(5, 0);
-				} catch (InterruptedException e) {
-					LanguageServerPlugin.logError(e);
+				int toRead = Math.min(len, count);
+				int firstChunk = Math.min(toRead, buffer.length - readIndex);
+				System.arraycopy(buffer, readIndex, b, off, firstChunk);
+				if (firstChunk < toRead) {
+					System.arraycopy(buffer, 0, b, off + firstChunk, toRead - firstChunk);
+				}
+				readIndex = (readIndex + toRead) % buffer.length;
+				count -= toRead;
+				notFull.signal();
+				return toRead;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Must be called while holding the lock.
+		 * @return whether some data is available, <code>false</code> on end of stream
+		 */
+		private boolean awaitData() throws InterruptedIOException {
+			try {
+				while (count == 0) {
+					if (closed || process.isTerminated()) {
+						return false;
+					}
+					// the process termination isn't notified, so check it periodically
+					notEmpty.awaitNanos(TERMINATION_CHECK_INTERVAL);
 				}
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
 			}
-			return queue.poll();
 		}
 
 		@Override
 		public int available() throws IOException {
-			return queue.size();
+			lock.lock();
+			try {
+				return count;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			lock.lock();
+			try {
+				closed = true;
+				notEmpty.signalAll();
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
 		}
 
 	}
 
+	/**
+	 * Copies samples of what is read from the process output to a console: at
+	 * most {@link #SAMPLE_SIZE} bytes every {@link #SAMPLE_INTERVAL} milliseconds.
+	 * Writing to the console happens in a job, so it doesn't slow down the reader
+	 * and the console doesn't grow with the traffic.
+	 */
+	private static class SampledConsoleMirrorInputStream extends FilterInputStream {
+
+		private static final int SAMPLE_SIZE = 512;
+		private static final long SAMPLE_INTERVAL = 1000;
+
+		private final MessageConsole console;
+		private final ConcurrentLinkedQueue<byte[]> samples = new ConcurrentLinkedQueue<>();
+		private final Job mirrorJob;
+		private long nextSampleTime = 0;
+
+		SampledConsoleMirrorInputStream(InputStream in, MessageConsole console) {
+			super(in);
+			this.console = console;
+			this.mirrorJob = new Job(console.getName()) {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					try (MessageConsoleStream stream = SampledConsoleMirrorInputStream.this.console.newMessageStream()) {
+						byte[] sample = null;
+						while ((sample = samples.poll()) != null) {
+							stream.write(sample);
+							stream.println("[...]"); //$NON-NLS-1$
+						}
+					} catch (IOException e) {
+						LanguageServerPlugin.logError(e);
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			this.mirrorJob.setSystem(true);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int res = super.read();
+			if (res != -1 && shouldSample()) {
+				mirror(new byte[] { (byte) res });
+			}
+			return res;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int res = super.read(b, off, len);
+			if (res > 0 && shouldSample()) {
+				mirror(Arrays.copyOfRange(b, off, off + Math.min(res, SAMPLE_SIZE)));
+			}
+			return res;
+		}
+
+		private boolean shouldSample() {
+			long now = System.currentTimeMillis();
+			if (now < nextSampleTime) {
+				return false;
+			}
+			nextSampleTime = now + SAMPLE_INTERVAL;
+			return true;
+		}
+
+		private void mirror(byte[] sample) {
+			samples.add(sample);
+			mirrorJob.schedule();
+		}
+	}
+
+	/**
+	 * Attaches to process streams unless the launch configuration opts out, see
+	 * {@link #ATTR_ATTACH_TO_PROCESS_STREAMS}.
+	 */
 	public LaunchConfigurationStreamProvider(ILaunchConfiguration launchConfig, Set<String> launchModes) {
+		this(launchConfig, launchModes, isAttachingToProcessStreams(launchConfig));
+	}
+
+	/**
+	 * @param launchConfig the launch configuration starting the language server
+	 * @param launchModes the launch modes to use, <code>run</code> if <code>null</code>
+	 * @param attachToProcessStreams whether to directly use the stdin/stdout of the
+	 *        launched process instead of reading output from the console stream monitor
+	 */
+	public LaunchConfigurationStreamProvider(ILaunchConfiguration launchConfig, Set<String> launchModes, boolean attachToProcessStreams) {
 		super();
 		Assert.isNotNull(launchConfig);
 		this.launchConfiguration = launchConfig;
@@ -99,6 +330,7 @@ public class LaunchConfigurationStreamProvider implements StreamConnectionProvid
 		} else {
 			this.launchModes = Collections.singleton(ILaunchManager.RUN_MODE);
 		}
+		this.attachToProcessStreams = attachToProcessStreams;
 	}
 
 	@Override
@@ -110,12 +342,28 @@ public class LaunchConfigurationStreamProvider implements StreamConnectionProvid
 			return false;
 		}
 		LaunchConfigurationStreamProvider other = (LaunchConfigurationStreamProvider)obj;
-		return this.launchConfiguration.equals(other.launchConfiguration) && this.launchModes.equals(other.launchModes);
+		return this.launchConfiguration.equals(other.launchConfiguration) && this.launchModes.equals(other.launchModes)
+				&& this.attachToProcessStreams == other.attachToProcessStreams;
 	}
 
 	@Override
 	public int hashCode() {
-		return this.launchConfiguration.hashCode() ^ this.launchModes.hashCode();
+		return this.launchConfiguration.hashCode() ^ this.launchModes.hashCode() ^ Boolean.hashCode(this.attachToProcessStreams);
+	}
+
+	/**
+	 * @return whether the process streams of the launch configuration should be
+	 *         used directly. A launch configuration which doesn't let the debug
+	 *         framework read the process output can only be read this way.
+	 */
+	static boolean isAttachingToProcessStreams(ILaunchConfiguration launchConfig) {
+		try {
+			return !launchConfig.getAttribute(DebugPlugin.ATTR_CAPTURE_OUTPUT, true)
+					|| launchConfig.getAttribute(ATTR_ATTACH_TO_PROCESS_STREAMS, true);
+		} catch (CoreException e) {
+			LanguageServerPlugin.logError(e);
+			return true;
+		}
 	}
 
 	public static ILaunchConfiguration findLaunchConfiguration(String typeId, String name) {
@@ -137,7 +385,18 @@ public class LaunchConfigurationStreamProvider implements StreamConnectionProvid
 	@Override
 	public void start() throws IOException {
 		try {
-			launch = this.launchConfiguration.launch(this.launchModes.iterator().next(), new NullProgressMonitor());
+			String mode = this.launchModes.iterator().next();
+			if (this.attachToProcessStreams) {
+				// prevent debug framework from consuming the output we read directly
+				ILaunchConfigurationWorkingCopy workingCopy = this.launchConfiguration.getWorkingCopy();
+				workingCopy.setAttribute(DebugPlugin.ATTR_CAPTURE_OUTPUT, false);
+				launch = workingCopy.launch(mode, new NullProgressMonitor());
+				if (this.launchConfiguration.getAttribute(IDebugUIConstants.ATTR_CAPTURE_IN_CONSOLE, true)) {
+					this.mirrorConsole = ServerMessageHandler.findConsole(this.launchConfiguration.getName());
+				}
+			} else {
+				launch = this.launchConfiguration.launch(mode, new NullProgressMonitor());
+			}
 		} catch (Exception e) {
 			LanguageServerPlugin.logError(e);
 		}
@@ -147,28 +406,69 @@ public class LaunchConfigurationStreamProvider implements StreamConnectionProvid
 	public InputStream getInputStream() {
 		if (this.inputStream == null) {
 			process = this.launch.getProcesses()[0];
-			this.inputStream = new StreamProxyInputStream(process);
-			process.getStreamsProxy().getOutputStreamMonitor().addListener(this.inputStream);
+			if (this.attachToProcessStreams) {
+				Process systemProcess = getSystemProcess(process);
+				if (systemProcess != null) {
+					drainErrorStream(systemProcess.getErrorStream());
+					InputStream processOutput = systemProcess.getInputStream();
+					this.inputStream = this.mirrorConsole != null ? new SampledConsoleMirrorInputStream(processOutput, this.mirrorConsole) : processOutput;
+				}
+			} else {
+				StreamProxyInputStream proxy = new StreamProxyInputStream(process);
+				process.getStreamsProxy().getOutputStreamMonitor().addListener(proxy);
+				this.inputStream = proxy;
+			}
 		}
 		return this.inputStream;
 	}
 
+	/**
+	 * As output isn't captured when attaching to process streams, read error
+	 * stream in a separate thread so the process doesn't block on a full pipe.
+	 */
+	private void drainErrorStream(InputStream errorStream) {
+		final MessageConsole console = this.mirrorConsole;
+		Thread drainThread = new Thread(() -> {
+			byte[] buffer = new byte[4096];
+			try (InputStream error = errorStream;
+					OutputStream consoleStream = console != null ? console.newMessageStream() : null) {
+				int read = 0;
+				while ((read = error.read(buffer)) != -1) {
+					if (consoleStream != null) {
+						consoleStream.write(buffer, 0, read);
+					}
+				}
+			} catch (IOException e) {
+				// stream closed on process termination
+			}
+		}, "LSP error stream reader for " + this.launchConfiguration.getName()); //$NON-NLS-1$
+		drainThread.setDaemon(true);
+		drainThread.start();
+	}
+
 	@Override
 	public OutputStream getOutputStream() {
 		if (this.outputStream == null) {
-			try {
-				// TODO: Ugly hack, find something better to retrieve stream!
-				Method systemProcessGetter = RuntimeProcess.class.getDeclaredMethod("getSystemProcess"); //$NON-NLS-1$
-				systemProcessGetter.setAccessible(true);
-				Process systemProcess = (Process)systemProcessGetter.invoke(process);
+			Process systemProcess = getSystemProcess(process);
+			if (systemProcess != null) {
 				this.outputStream = systemProcess.getOutputStream();
-			} catch (ReflectiveOperationException ex) {
-				LanguageServerPlugin.logError(ex);
 			}
 		}
 		return this.outputStream;
 	}
 
+	private static Process getSystemProcess(IProcess process) {
+		try {
+			// TODO: Ugly hack, find something better to retrieve stream!
+			Method systemProcessGetter = RuntimeProcess.class.getDeclaredMethod("getSystemProcess"); //$NON-NLS-1$
+			systemProcessGetter.setAccessible(true);
+			return (Process)systemProcessGetter.invoke(process);
+		} catch (ReflectiveOperationException ex) {
+			LanguageServerPlugin.logError(ex);
+			return null;
+		}
+	}
+
 	@Override
 	public void stop() {
 		if (this.launch == null) {
@@ -193,6 +493,7 @@ public class LaunchConfigurationStreamProvider implements StreamConnectionProvid
 		}
 		this.inputStream = null;
 		this.outputStream = null;
+		this.mirrorConsole = null;
 	}
 
 }
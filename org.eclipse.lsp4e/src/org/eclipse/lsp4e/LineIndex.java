@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.lsp4j.Position;
+
+/**
+ * Immutable table of the offsets at which the lines of a text start, to
+ * convert many LSP {@link Position}s and document offsets without querying the
+ * document for each of them. Being immutable, it can be used from any thread,
+ * even while the document it was computed from is modified.
+ * <p>
+ * Tables of documents are the ones of their {@link DocumentSnapshot}s, so all
+ * the conversions made for a given version of a document share a single table.
+ *
+ * @since 0.3.0
+ */
+public final class LineIndex {
+
+	private final int[] lineOffsets;
+	private final int length;
+
+	private LineIndex(@NonNull CharSequence text) {
+		int[] offsets = new int[16];
+		int lines = 1;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+				i++;
+			} else if (c != '\r' && c != '\n') {
+				continue;
+			}
+			if (lines == offsets.length) {
+				offsets = Arrays.copyOf(offsets, lines * 2);
+			}
+			offsets[lines++] = i + 1;
+		}
+		this.lineOffsets = Arrays.copyOf(offsets, lines);
+		this.length = length;
+	}
+
+	/**
+	 * Meant for readers out of the UI thread: the first call after each change
+	 * copies the whole content of the document. The UI thread, which modifies
+	 * the document, should rather use the line information of the document
+	 * itself, for example through
+	 * {@link LSPEclipseUtils#toOffset(Position, IDocument)}.
+	 *
+	 * @return the line index of the current {@link DocumentSnapshot} of the
+	 *         document, reused as long as the document isn't modified
+	 */
+	public static @NonNull LineIndex of(@NonNull IDocument document) {
+		return DocumentSnapshot.of(document).getLineIndex();
+	}
+
+	/**
+	 * @return the line index of the given text
+	 */
+	public static @NonNull LineIndex of(@NonNull CharSequence text) {
+		return new LineIndex(text);
+	}
+
+	public int getNumberOfLines() {
+		return this.lineOffsets.length;
+	}
+
+	/**
+	 * @return the length of the indexed text
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	public int getLineOffset(int line) throws BadLocationException {
+		if (line < 0 || line >= this.lineOffsets.length) {
+			throw new BadLocationException("Invalid line " + line); //$NON-NLS-1$
+		}
+		return this.lineOffsets[line];
+	}
+
+	public int getLineOfOffset(int offset) throws BadLocationException {
+		if (offset < 0 || offset > this.length) {
+			throw new BadLocationException("Invalid offset " + offset); //$NON-NLS-1$
+		}
+		int line = Arrays.binarySearch(this.lineOffsets, offset);
+		return line >= 0 ? line : -line - 2;
+	}
+
+	/**
+	 * Same as {@link LSPEclipseUtils#toOffset(Position, IDocument)}
+	 */
+	public int toOffset(@NonNull Position position) throws BadLocationException {
+		return getLineOffset(position.getLine()) + position.getCharacter();
+	}
+
+	/**
+	 * Same as {@link LSPEclipseUtils#toPosition(int, IDocument)}
+	 */
+	public @NonNull Position toPosition(int offset) throws BadLocationException {
+		int line = getLineOfOffset(offset);
+		return new Position(line, offset - this.lineOffsets[line]);
+	}
+
+	/**
+	 * Converts positions to offsets; each position is a direct lookup in the
+	 * table, so no sorting is needed.
+	 *
+	 * @return the offsets of the positions, in the same order, -1 for positions
+	 *         on lines that don't exist
+	 */
+	public int @NonNull [] toOffsets(@NonNull List<? extends @Nullable Position> positions) {
+		int[] res = new int[positions.size()];
+		for (int i = 0; i < res.length; i++) {
+			Position position = positions.get(i);
+			if (position == null || position.getLine() < 0 || position.getLine() >= this.lineOffsets.length) {
+				res[i] = -1;
+			} else {
+				res[i] = this.lineOffsets[position.getLine()] + position.getCharacter();
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Converts offsets to positions in a single pass over the lines, walking
+	 * the offsets in ascending order.
+	 *
+	 * @return the positions of the offsets, in the same order, <code>null</code>
+	 *         for offsets out of the text
+	 */
+	public @Nullable Position @NonNull [] toPositions(int @NonNull [] offsets) {
+		Position[] res = new Position[offsets.length];
+		// sort (offset, index) pairs packed in longs, offsets are positive ints so the order is kept
+		long[] sorted = new long[offsets.length];
+		int count = 0;
+		for (int i = 0; i < offsets.length; i++) {
+			if (offsets[i] >= 0 && offsets[i] <= this.length) {
+				sorted[count++] = ((long) offsets[i] << 32) | i;
+			}
+		}
+		Arrays.sort(sorted, 0, count);
+		int line = 0;
+		for (int i = 0; i < count; i++) {
+			int offset = (int) (sorted[i] >>> 32);
+			while (line + 1 < this.lineOffsets.length && this.lineOffsets[line + 1] <= offset) {
+				line++;
+			}
+			res[(int) sorted[i]] = new Position(line, offset - this.lineOffsets[line]);
+		}
+		return res;
+	}
+
+}
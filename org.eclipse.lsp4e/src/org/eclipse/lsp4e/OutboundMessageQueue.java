@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+
+/**
+ * Ordered queue of the messages sent to a language server, written to the
+ * connection by a dedicated thread. Callers, often the UI thread, only
+ * enqueue messages, so a server not reading its input doesn't freeze them.
+ * They do wait when {@link #CAPACITY} messages are already queued, possibly
+ * holding locks such as the one of a document synchronizer; messages are
+ * never dropped, as a missing notification would leave the server out of sync
+ * and a missing request would never be answered. Once writing a message
+ * fails, or a caller gets interrupted while waiting, the messages still
+ * queued are dropped, the failure is reported so the connection gets
+ * disposed, and further messages are rejected. Queue depth and time spent
+ * writing are exposed as metrics.
+ *
+ * @since 0.3.0
+ */
+public final class OutboundMessageQueue implements MessageConsumer {
+
+	/**
+	 * Number of messages which can be queued before senders wait
+	 */
+	public static final int CAPACITY = 1024;
+
+	/**
+	 * Marks the end of the messages to write
+	 */
+	private static final Message END = new NotificationMessage();
+
+	private final @NonNull MessageConsumer target;
+	private final @Nullable Consumer<OutboundMessageQueue> failureHandler;
+	private final BlockingQueue<Message> queue = new LinkedBlockingQueue<>(CAPACITY);
+	private final Thread writer;
+	private volatile boolean closed;
+	private volatile boolean failed;
+	private volatile long writeStartNanos;
+	private final AtomicLong maxWriteStallNanos = new AtomicLong();
+	private final AtomicLong writtenMessages = new AtomicLong();
+
+	/**
+	 * @param serverName used to name the writer thread
+	 * @param target the consumer actually writing messages to the connection
+	 * @param failureHandler called by the writer thread with this queue when
+	 *            a message can't be written, unless the queue was closed
+	 */
+	OutboundMessageQueue(@NonNull String serverName, @NonNull MessageConsumer target,
+			@Nullable Consumer<OutboundMessageQueue> failureHandler) {
+		this.target = target;
+		this.failureHandler = failureHandler;
+		this.writer = new Thread(this::writeMessages, "LSP4E " + serverName + " writer"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Enqueues the message, waiting for room if the queue is full. If the
+	 * thread is interrupted meanwhile, the connection is failed, as the
+	 * message can't be sent in order anymore.
+	 *
+	 * @throws IllegalStateException
+	 *             if the queue was closed, writing a previous message failed,
+	 *             or the thread got interrupted while waiting; requests then
+	 *             fail in the caller instead of never being answered
+	 */
+	@Override
+	public void consume(Message message) {
+		if (this.closed || this.failed) {
+			throw new IllegalStateException("Connection to language server is " + (this.failed ? "broken" : "closed")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		try {
+			this.queue.put(message);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.failed = true;
+			this.queue.clear();
+			// reported by the writer, so the failure handler doesn't run with the locks of the caller
+			this.writer.interrupt();
+			throw new IllegalStateException("Interrupted while waiting to send a message to language server", e); //$NON-NLS-1$
+		}
+	}
+
+	private void writeMessages() {
+		try {
+			while (!this.failed) {
+				Message message = this.queue.take();
+				if (message == END) {
+					return;
+				}
+				this.writeStartNanos = System.nanoTime();
+				try {
+					this.target.consume(message);
+					this.writtenMessages.incrementAndGet();
+				} catch (RuntimeException e) {
+					this.failed = true;
+					// connection is broken, nothing else can be written
+					this.queue.clear();
+					reportFailure(e);
+					return;
+				} finally {
+					this.maxWriteStallNanos.accumulateAndGet(System.nanoTime() - this.writeStartNanos, Math::max);
+					this.writeStartNanos = 0;
+				}
+			}
+			reportFailure(null);
+		} catch (InterruptedException e) {
+			// closed while waiting for messages, or a sender got interrupted
+			if (this.failed) {
+				reportFailure(null);
+			}
+		} finally {
+			LanguageServerExecutionService.getInstance().outboundQueueClosed(this);
+		}
+	}
+
+	/**
+	 * @param error the error writing a message, <code>null</code> if a sender got interrupted
+	 */
+	private void reportFailure(@Nullable RuntimeException error) {
+		if (this.closed) {
+			return;
+		}
+		if (error != null) {
+			LanguageServerPlugin.logError(error);
+		} else {
+			LanguageServerPlugin.logError(this.writer.getName() + ": a message couldn't be enqueued, connection is disposed", null); //$NON-NLS-1$
+		}
+		if (this.failureHandler != null) {
+			this.failureHandler.accept(this);
+		}
+	}
+
+	/**
+	 * Stops accepting messages. The writer keeps on sending those already
+	 * queued, until the connection gets closed; this doesn't wait for it.
+	 */
+	public void close() {
+		this.closed = true;
+		if (!this.queue.offer(END)) {
+			this.writer.interrupt();
+		}
+	}
+
+	/**
+	 * @return whether the writer stopped, after the queue was closed or writing failed
+	 */
+	public boolean isTerminated() {
+		return !this.writer.isAlive();
+	}
+
+	/**
+	 * @return the number of messages waiting to be written
+	 */
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return how long in milliseconds the message being written has been
+	 *         blocking the writer, 0 if none is being written
+	 */
+	public long getCurrentWriteStall() {
+		long start = this.writeStartNanos;
+		return start == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * @return the longest time in milliseconds writing a single message took
+	 */
+	public long getMaxWriteStall() {
+		return TimeUnit.NANOSECONDS.toMillis(this.maxWriteStallNanos.get());
+	}
+
+	/**
+	 * @return the number of messages written so far
+	 */
+	public long getWrittenMessageCount() {
+		return this.writtenMessages.get();
+	}
+
+	@Override
+	public String toString() {
+		return "OutboundMessageQueue [" + this.writer.getName() //$NON-NLS-1$
+				+ ", queueDepth=" + getQueueDepth() //$NON-NLS-1$
+				+ ", currentWriteStall=" + getCurrentWriteStall() + "ms" //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", maxWriteStall=" + getMaxWriteStall() + "ms]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * Keeps track of requests sent to a language server which didn't get a
+ * response yet. The remote proxy of lsp4j never completes those when the
+ * connection is lost, so callers waiting on them would hang forever; this
+ * allows to fail them all at once.
+ */
+final class PendingRequestTracker {
+
+	private final Set<CompletableFuture<?>> pendingRequests = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @return a proxy of the given service (and of the services it gives
+	 *         access to) which registers every returned future until it
+	 *         completes
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T track(@NonNull T service, Class<T> serviceInterface) {
+		return (T) Proxy.newProxyInstance(serviceInterface.getClassLoader(), new Class<?>[] { serviceInterface },
+				new TrackingHandler(service));
+	}
+
+	private final class TrackingHandler implements InvocationHandler {
+		private final @NonNull Object service;
+		/**
+		 * Proxies of the services given access to, by the method returning
+		 * them, along with the service they track
+		 */
+		private final Map<Method, Object[]> serviceProxies = new ConcurrentHashMap<>();
+
+		TrackingHandler(@NonNull Object service) {
+			this.service = service;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				// the remote proxy answers those for itself, not for this proxy
+				switch (method.getName()) {
+				case "equals": //$NON-NLS-1$
+					return proxy == args[0];
+				case "hashCode": //$NON-NLS-1$
+					return System.identityHashCode(proxy);
+				default:
+					break;
+				}
+			}
+			Object result;
+			try {
+				result = method.invoke(this.service, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			if (result instanceof CompletableFuture<?>) {
+				CompletableFuture<?> request = (CompletableFuture<?>) result;
+				PendingRequestTracker.this.pendingRequests.add(request);
+				request.whenComplete((res, error) -> PendingRequestTracker.this.pendingRequests.remove(request));
+			} else if (result != null && isService(method)) {
+				Object[] cached = this.serviceProxies.get(method);
+				if (cached == null || cached[0] != result) {
+					cached = new Object[] { result, track(result, (Class<Object>) method.getReturnType()) };
+					this.serviceProxies.put(method, cached);
+				}
+				result = cached[1];
+			}
+			return result;
+		}
+	}
+
+	private static boolean isService(Method method) {
+		return method.getReturnType().isInterface() && method.getDeclaringClass() != Object.class;
+	}
+
+	/**
+	 * Completes exceptionally all requests which are still waiting for a response.
+	 */
+	void failAll(Throwable cause) {
+		List<CompletableFuture<?>> toFail = new ArrayList<>(this.pendingRequests);
+		this.pendingRequests.removeAll(toFail);
+		for (CompletableFuture<?> request : toFail) {
+			request.completeExceptionally(cause);
+		}
+	}
+
+}
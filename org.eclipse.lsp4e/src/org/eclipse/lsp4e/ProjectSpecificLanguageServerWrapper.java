@@ -10,25 +10,28 @@
  *******************************************************************************/
 package org.eclipse.lsp4e;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
 import org.eclipse.core.filebuffers.FileBuffers;
 import org.eclipse.core.filebuffers.IFileBuffer;
 import org.eclipse.core.filebuffers.IFileBufferListener;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -75,21 +78,44 @@ import org.eclipse.lsp4j.TextDocumentSyncKind;
 import org.eclipse.lsp4j.TextDocumentSyncOptions;
 import org.eclipse.lsp4j.WorkspaceClientCapabilities;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
 import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.jsonrpc.json.StreamMessageConsumer;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.jsonrpc.messages.Message;
 import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
 import org.eclipse.lsp4j.launch.LSPLauncher;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.lsp4j.services.LanguageServer;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.PlatformUI;
 
 /**
- * Wraps instantiation, initialization of project-specific instance of the language server
+ * Wraps instantiation, initialization of project-specific instance of the language server.
+ * For language server definitions which are {@link LanguageServerDefinition#isSingleton singleton},
+ * a single instance without project serves documents of the whole workspace.
  */
 public class ProjectSpecificLanguageServerWrapper {
 
+	/**
+	 * Time in milliseconds a language server is kept running after its last document was disconnected
+	 */
+	public static final String KEEP_ALIVE_PREF_KEY = "server.keepAlive"; //$NON-NLS-1$
+	/**
+	 * Maximum number of documents opened in a language server; the least recently used ones which
+	 * aren't opened in an editor get closed when it's exceeded. 0 means unbounded.
+	 */
+	public static final String MAX_OPEN_DOCUMENTS_PREF_KEY = "server.maxOpenDocuments"; //$NON-NLS-1$
+
+	private static final long INITIAL_RESTART_DELAY = 1000;
+	private static final long MAX_RESTART_DELAY = 60000;
+	private static final int MAX_RESTART_ATTEMPTS = 5;
+	/**
+	 * A server crashing after running for longer than this isn't considered as crashing repeatedly
+	 */
+	private static final long STABLE_RUN_DURATION = 3 * 60 * 1000;
+
 	private IFileBufferListener fileBufferListener = new FileBufferListenerAdapter() {
 		@Override
 		public void bufferDisposed(IFileBuffer buffer) {
@@ -117,7 +143,10 @@ public class ProjectSpecificLanguageServerWrapper {
 		}
 
 		private boolean isFromProject(IPath path) {
-			if (project == null || project.getLocation() == null) {
+			if (project == null) {
+				return connectedDocuments.containsKey(path) || documentsToReplay.containsKey(path);
+			}
+			if (project.getLocation() == null) {
 				return false;
 			}
 			return project.getLocation().isPrefixOf(path);
@@ -126,48 +155,103 @@ public class ProjectSpecificLanguageServerWrapper {
 	};
 
 	final @NonNull LanguageServerDefinition serverDefinition;
-	final @NonNull IProject project;
+	/**
+	 * The project served by this language server, or <code>null</code> if it serves the whole workspace.
+	 */
+	final @Nullable IProject project;
 	private final @NonNull StreamConnectionProvider lspStreamProvider;
-	private LanguageServer languageServer;
+	private volatile LanguageServer languageServer;
 	private Map<IPath, DocumentContentSynchronizer> connectedDocuments;
 
 	private InitializeResult initializeResult;
+	private volatile @Nullable ServerCapabilitiesDescriptor capabilitiesDescriptor;
 	private Future<?> launcherFuture;
+	private ExecutorService executorService;
+	private @Nullable OutboundMessageQueue outboundQueue;
 	private CompletableFuture<InitializeResult> initializeFuture;
 
 	private boolean capabilitiesAlreadyRequested;
+	private volatile long lastUsed = System.currentTimeMillis();
+	private final Job idleStopJob;
 
-	public ProjectSpecificLanguageServerWrapper(@NonNull IProject project, @NonNull LanguageServerDefinition serverDefinition) {
+	private final PendingRequestTracker pendingRequests = new PendingRequestTracker();
+	/**
+	 * Documents which were connected when the server crashed, or got connected while it was backing off, to open
+	 * once it's restarted
+	 */
+	private final Map<IPath, DocumentContentSynchronizer> documentsToReplay = new ConcurrentHashMap<>();
+	private final Job restartJob;
+	private long startTime;
+	private int restartAttempts;
+	private long restartNotBefore;
+
+	/**
+	 * @param project the project to serve, or <code>null</code> to serve all projects of the workspace
+	 * @param serverDefinition
+	 */
+	public ProjectSpecificLanguageServerWrapper(@Nullable IProject project, @NonNull LanguageServerDefinition serverDefinition) {
 		this.project = project;
 		this.serverDefinition = serverDefinition;
 		this.lspStreamProvider = serverDefinition.createConnectionProvider();
-		this.connectedDocuments = new HashMap<>();
+		this.connectedDocuments = new ConcurrentHashMap<>();
+		this.idleStopJob = new Job(Messages.stopIdleLanguageServer_job) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				synchronized (ProjectSpecificLanguageServerWrapper.this) {
+					if (!connectedDocuments.isEmpty() || !documentsToReplay.isEmpty()) {
+						return Status.OK_STATUS;
+					}
+					long remaining = lastUsed + getKeepAlive() - System.currentTimeMillis();
+					if (remaining > 0) {
+						schedule(remaining);
+					} else {
+						stop();
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		this.idleStopJob.setSystem(true);
+		this.restartJob = new Job(NLS.bind(Messages.restartLanguageServer_job, serverDefinition.getLabel())) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				restart();
+				return Status.OK_STATUS;
+			}
+		};
+		this.restartJob.setSystem(true);
+	}
+
+	private static long getKeepAlive() {
+		return LanguageServerPlugin.getDefault().getPreferenceStore().getLong(KEEP_ALIVE_PREF_KEY);
 	}
 
 	/**
 	 * Starts a language server and triggers initialization. If language server is started and active, does nothing. If
-	 * language server is inactive, restart it.
+	 * language server terminated unexpectedly, it gets restarted with an exponential backoff, and the documents which
+	 * were connected to it are reopened.
 	 *
 	 * @throws IOException
 	 */
 	public synchronized void start() throws IOException {
-		Map<IPath, IDocument> filesToReconnect = Collections.emptyMap();
 		if (this.languageServer != null) {
 			if (isActive()) {
 				return;
-			} else {
-				filesToReconnect = new HashMap<>();
-				for (Entry<IPath, DocumentContentSynchronizer> entry : this.connectedDocuments.entrySet()) {
-					filesToReconnect.put(entry.getKey(), entry.getValue().getDocument());
-				}
-				stop();
 			}
+			// connection is lost but the supervisor didn't handle it yet
+			serverTerminated(this.launcherFuture);
+		}
+		if (System.currentTimeMillis() < this.restartNotBefore) {
+			// backing off after a crash
+			return;
 		}
 		try {
 			this.lspStreamProvider.start();
 
 			LanguageClient client = new LanguageClient() {
-				private LSPDiagnosticsToMarkers diagnosticHandler = new LSPDiagnosticsToMarkers(project, ProjectSpecificLanguageServerWrapper.this.serverDefinition.getId());
+				private LSPDiagnosticsToMarkers diagnosticHandler = project != null
+						? new LSPDiagnosticsToMarkers(project, ProjectSpecificLanguageServerWrapper.this.serverDefinition.getId())
+						: new LSPDiagnosticsToMarkers(ProjectSpecificLanguageServerWrapper.this.serverDefinition.getId());
 
 				@Override
 				public void telemetryEvent(Object object) {
@@ -215,19 +299,34 @@ public class ProjectSpecificLanguageServerWrapper {
 					});
 				}
 			};
-			ExecutorService executorService = Executors.newCachedThreadPool();
+			this.executorService = LanguageServerExecutionService.getInstance().createExecutor(serverDefinition.getLabel());
 			final InitializeParams initParams = new InitializeParams();
-			initParams.setRootUri(LSPEclipseUtils.toUri(project).toString());
-			initParams.setRootPath(project.getLocation().toFile().getAbsolutePath());
+			// a shared server gets the workspace as root, documents of all projects are sent through it
+			IPath rootLocation = project != null ? project.getLocation() : ResourcesPlugin.getWorkspace().getRoot().getLocation();
+			initParams.setRootUri(LSPEclipseUtils.toUri(rootLocation).toString());
+			initParams.setRootPath(rootLocation.toFile().getAbsolutePath());
 			Launcher<LanguageServer> launcher = LSPLauncher.createClientLauncher(client,
-					this.lspStreamProvider.getInputStream(), this.lspStreamProvider.getOutputStream(), executorService,
-					consumer -> (message -> {
-						consumer.consume(message);
-						logMessage(message);
-						this.lspStreamProvider.handleMessage(message, this.languageServer, URI.create(initParams.getRootUri()));
-					}));
-			this.languageServer = launcher.getRemoteProxy();
+					this.lspStreamProvider.getInputStream(), this.lspStreamProvider.getOutputStream(), this.executorService,
+					consumer -> {
+						MessageConsumer target = consumer;
+						if (consumer instanceof StreamMessageConsumer) {
+							// outgoing messages: only enqueue them, the writer serializes and sends them
+							this.outboundQueue = LanguageServerExecutionService.getInstance().createOutboundQueue(serverDefinition.getLabel(), consumer,
+									this::outboundQueueFailed);
+							target = this.outboundQueue;
+						}
+						final MessageConsumer wrapped = target;
+						return message -> {
+							wrapped.consume(message);
+							logMessage(message);
+							this.lspStreamProvider.handleMessage(message, this.languageServer, URI.create(initParams.getRootUri()));
+						};
+					});
+			this.languageServer = this.pendingRequests.track(launcher.getRemoteProxy(), LanguageServer.class);
 			this.launcherFuture = launcher.startListening();
+			this.startTime = System.currentTimeMillis();
+			superviseConnection(this.launcherFuture);
+			DocumentBindingCache.getInstance().invalidateAll();
 
 			String name = "Eclipse IDE"; //$NON-NLS-1$
 			if (Platform.getProduct() != null) {
@@ -259,18 +358,9 @@ public class ProjectSpecificLanguageServerWrapper {
 					this.lspStreamProvider.getInitializationOptions(URI.create(initParams.getRootUri())));
 			initializeFuture = languageServer.initialize(initParams).thenApply(res -> {
 				initializeResult = res;
+				capabilitiesDescriptor = new ServerCapabilitiesDescriptor(res.getCapabilities());
 				return res;
 			});
-			final Map<IPath, IDocument> toReconnect = filesToReconnect;
-			initializeFuture.thenRun(() -> {
-				for (Entry<IPath, IDocument> fileToReconnect : toReconnect.entrySet()) {
-					try {
-						connect(fileToReconnect.getKey(), fileToReconnect.getValue());
-					} catch (IOException e) {
-						LanguageServerPlugin.logError(e);
-					}
-				}
-			});
 			FileBuffers.getTextFileBufferManager().addFileBufferListener(fileBufferListener);
 		} catch (Exception ex) {
 			LanguageServerPlugin.logError(ex);
@@ -278,6 +368,97 @@ public class ProjectSpecificLanguageServerWrapper {
 		}
 	}
 
+	/**
+	 * Watches the connection, so a server terminating without being asked to is noticed right away
+	 */
+	private void superviseConnection(@NonNull Future<?> future) {
+		Thread supervisor = new Thread(() -> {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (CancellationException | ExecutionException e) {
+				// connection closed, check below whether it was on purpose
+			}
+			serverTerminated(future);
+		}, "LSP4E supervisor - " + serverDefinition.getLabel()); //$NON-NLS-1$
+		supervisor.setDaemon(true);
+		supervisor.start();
+	}
+
+	/**
+	 * Releases the connection to a server which terminated unexpectedly: pending requests fail, and connected
+	 * documents are reopened once the server is restarted with an exponential backoff.
+	 */
+	private synchronized void serverTerminated(Future<?> future) {
+		if (future == null || future != this.launcherFuture) {
+			// stopped on purpose, or already handled
+			return;
+		}
+		LanguageServerPlugin.logInfo("Language server " + serverDefinition.getLabel() + " terminated unexpectedly"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.pendingRequests.failAll(new IOException("Language server " + serverDefinition.getLabel() + " terminated unexpectedly")); //$NON-NLS-1$ //$NON-NLS-2$
+		for (Entry<IPath, DocumentContentSynchronizer> entry : this.connectedDocuments.entrySet()) {
+			entry.getValue().getDocument().removeDocumentListener(entry.getValue());
+			this.documentsToReplay.put(entry.getKey(), entry.getValue());
+		}
+		this.connectedDocuments.clear();
+		disposeConnection();
+		scheduleRestart();
+	}
+
+	/**
+	 * Handles a message which couldn't be written as a crash of the server, as nothing can be sent to it anymore
+	 */
+	private synchronized void outboundQueueFailed(OutboundMessageQueue queue) {
+		if (queue == this.outboundQueue) {
+			serverTerminated(this.launcherFuture);
+		}
+	}
+
+	private void scheduleRestart() {
+		long now = System.currentTimeMillis();
+		if (now - this.startTime > STABLE_RUN_DURATION) {
+			this.restartAttempts = 0;
+		}
+		long delay = Math.min(MAX_RESTART_DELAY, INITIAL_RESTART_DELAY << Math.min(this.restartAttempts, 16));
+		this.restartAttempts++;
+		this.restartNotBefore = now + delay;
+		if (this.restartAttempts > MAX_RESTART_ATTEMPTS) {
+			LanguageServerPlugin.logError("Language server " + serverDefinition.getLabel() + " crashed " //$NON-NLS-1$ //$NON-NLS-2$
+					+ MAX_RESTART_ATTEMPTS + " times in a row, it won't be restarted automatically", null); //$NON-NLS-1$
+			this.documentsToReplay.clear();
+		} else if (!this.documentsToReplay.isEmpty()) {
+			this.restartJob.schedule(delay);
+		}
+	}
+
+	private synchronized void restart() {
+		Map<IPath, DocumentContentSynchronizer> documents = new HashMap<>(this.documentsToReplay);
+		this.documentsToReplay.clear();
+		if (documents.isEmpty()) {
+			return;
+		}
+		try {
+			start();
+		} catch (IOException e) {
+			LanguageServerPlugin.logError(e);
+		}
+		if (!isActive()) {
+			this.documentsToReplay.putAll(documents);
+			this.startTime = System.currentTimeMillis();
+			scheduleRestart();
+			return;
+		}
+		for (Entry<IPath, DocumentContentSynchronizer> entry : documents.entrySet()) {
+			try {
+				connect(entry.getKey(), entry.getValue().getDocument(), entry.getValue().getVersion());
+			} catch (IOException e) {
+				LanguageServerPlugin.logError(e);
+			}
+		}
+	}
+
 	private void logMessage(Message message) {
 		if (message instanceof ResponseMessage && ((ResponseMessage) message).getError() != null) {
 			ResponseMessage responseMessage = (ResponseMessage) message;
@@ -287,6 +468,13 @@ public class ProjectSpecificLanguageServerWrapper {
 		}
 	}
 
+	/**
+	 * @return whether this wrapper can serve documents of the given project
+	 */
+	public boolean canOperate(@NonNull IProject project) {
+		return this.project == null || this.project.equals(project);
+	}
+
 	/**
 	 * @return whether the underlying connection to language server is still active
 	 */
@@ -294,13 +482,18 @@ public class ProjectSpecificLanguageServerWrapper {
 		return this.launcherFuture != null && !this.launcherFuture.isDone() && !this.launcherFuture.isCancelled();
 	}
 
-	private synchronized void stop() {
-		if (this.initializeFuture != null) {
-			this.initializeFuture.cancel(true);
-			this.initializeFuture = null;
+	synchronized void stop() {
+		this.restartJob.cancel();
+		this.documentsToReplay.clear();
+		this.idleStopJob.cancel();
+		boolean active = isActive();
+		for (DocumentContentSynchronizer documentListener : this.connectedDocuments.values()) {
+			documentListener.getDocument().removeDocumentListener(documentListener);
+			if (active) {
+				documentListener.documentClosed();
+			}
 		}
-		this.initializeResult = null;
-		this.capabilitiesAlreadyRequested = false;
+		this.connectedDocuments.clear();
 
 		if (this.languageServer != null) {
 			try {
@@ -310,6 +503,25 @@ public class ProjectSpecificLanguageServerWrapper {
 				// most likely closed externally
 			}
 		}
+		this.pendingRequests.failAll(new CancellationException());
+		disposeConnection();
+
+		FileBuffers.getTextFileBufferManager().removeFileBufferListener(fileBufferListener);
+	}
+
+	private void disposeConnection() {
+		if (this.initializeFuture != null) {
+			this.initializeFuture.cancel(true);
+			this.initializeFuture = null;
+		}
+		this.initializeResult = null;
+		this.capabilitiesDescriptor = null;
+		this.capabilitiesAlreadyRequested = false;
+		if (this.outboundQueue != null) {
+			// doesn't wait for queued messages, the shutdown request already got its response
+			this.outboundQueue.close();
+			this.outboundQueue = null;
+		}
 		if (this.launcherFuture != null) {
 			this.launcherFuture.cancel(true);
 			this.launcherFuture = null;
@@ -317,23 +529,28 @@ public class ProjectSpecificLanguageServerWrapper {
 		if (this.lspStreamProvider != null) {
 			this.lspStreamProvider.stop();
 		}
-		while (!this.connectedDocuments.isEmpty()) {
-			disconnect(this.connectedDocuments.keySet().iterator().next());
+		if (this.executorService != null) {
+			this.executorService.shutdownNow();
+			this.executorService = null;
 		}
 		this.languageServer = null;
-
-		FileBuffers.getTextFileBufferManager().removeFileBufferListener(fileBufferListener);
+		DocumentBindingCache.getInstance().invalidateAll();
 	}
 
 	public void connect(@NonNull IPath absolutePath, IDocument document) throws IOException {
+		connect(absolutePath, document, 0);
+	}
+
+	private void connect(@NonNull IPath absolutePath, IDocument document, int initialVersion) throws IOException {
 		final IPath thePath = Path.fromOSString(absolutePath.toFile().getAbsolutePath()); // should be useless
-		if (this.connectedDocuments.containsKey(thePath)) {
+		this.lastUsed = System.currentTimeMillis();
+		DocumentContentSynchronizer connected = this.connectedDocuments.get(thePath);
+		if (connected != null) {
+			connected.touch();
 			return;
 		}
+		this.idleStopJob.cancel();
 		start();
-		if (this.initializeFuture == null) {
-			return;
-		}
 		if (document == null) {
 			IFile file = (IFile) LSPEclipseUtils.findResourceFor(thePath.toFile().toURI().toString());
 			document = LSPEclipseUtils.getDocument(file);
@@ -341,8 +558,12 @@ public class ProjectSpecificLanguageServerWrapper {
 		if (document == null) {
 			return;
 		}
+		CompletableFuture<InitializeResult> initialization = getInitializationOrReplayLater(thePath, document, initialVersion);
+		if (initialization == null) {
+			return;
+		}
 		final IDocument theDocument = document;
-		initializeFuture.thenRun(() -> {
+		initialization.thenRun(() -> {
 			if (this.connectedDocuments.containsKey(thePath)) {
 				return;
 			}
@@ -356,23 +577,125 @@ public class ProjectSpecificLanguageServerWrapper {
 					syncKind = syncOptions.getLeft();
 				}
 			}
-			DocumentContentSynchronizer listener = new DocumentContentSynchronizer(this, theDocument, thePath, syncKind);
+			DocumentContentSynchronizer listener = new DocumentContentSynchronizer(this, theDocument, thePath, syncKind, initialVersion);
 			theDocument.addDocumentListener(listener);
+			listener.documentOpened();
 			ProjectSpecificLanguageServerWrapper.this.connectedDocuments.put(thePath, listener);
+			closeLeastRecentlyUsedDocuments(thePath);
+			IFile file = LSPEclipseUtils.getFile(theDocument);
+			if (file != null) {
+				LanguageServerPrewarmer.recordUsage(file.getProject(), this.serverDefinition);
+			}
 		});
 	}
 
+	/**
+	 * @return the initialization of the started language server, or <code>null</code> if it isn't started. If it's
+	 *         backing off after a crash, the document is opened once it's restarted.
+	 */
+	private synchronized @Nullable CompletableFuture<InitializeResult> getInitializationOrReplayLater(@NonNull IPath path,
+			@NonNull IDocument document, int version) {
+		if (this.initializeFuture != null) {
+			return this.initializeFuture;
+		}
+		long delay = this.restartNotBefore - System.currentTimeMillis();
+		if (delay > 0 && this.restartAttempts <= MAX_RESTART_ATTEMPTS) {
+			this.documentsToReplay.putIfAbsent(path, new DocumentContentSynchronizer(this, document, path, null, version));
+			// no restart is scheduled if no document was connected when the server crashed
+			int state = this.restartJob.getState();
+			if (state != Job.WAITING && state != Job.SLEEPING) {
+				this.restartJob.schedule(delay);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Closes the least recently used documents while more than the maximum number of documents are open,
+	 * except those opened in an editor. Closed documents get reopened when they're used again.
+	 */
+	private void closeLeastRecentlyUsedDocuments(@NonNull IPath justConnected) {
+		int maxOpenDocuments = LanguageServerPlugin.getDefault().getPreferenceStore().getInt(MAX_OPEN_DOCUMENTS_PREF_KEY);
+		if (maxOpenDocuments <= 0) {
+			return;
+		}
+		DocumentConnectionPolicy policy = DocumentConnectionPolicy.getInstance();
+		while (this.connectedDocuments.size() > maxOpenDocuments) {
+			Entry<IPath, DocumentContentSynchronizer> leastRecentlyUsed = null;
+			for (Entry<IPath, DocumentContentSynchronizer> entry : this.connectedDocuments.entrySet()) {
+				if (entry.getKey().equals(justConnected) || policy.isOpenInEditor(entry.getValue().getDocument())) {
+					continue;
+				}
+				if (leastRecentlyUsed == null || entry.getValue().getLastAccess() < leastRecentlyUsed.getValue().getLastAccess()) {
+					leastRecentlyUsed = entry;
+				}
+			}
+			if (leastRecentlyUsed == null) {
+				return;
+			}
+			disconnect(leastRecentlyUsed.getKey());
+			policy.documentEvicted(leastRecentlyUsed.getValue().getDocument(), leastRecentlyUsed.getKey());
+		}
+	}
+
 	public void disconnect(IPath path) {
 		DocumentContentSynchronizer documentListener = this.connectedDocuments.remove(path);
 		if (documentListener != null) {
 			documentListener.getDocument().removeDocumentListener(documentListener);
+			DocumentBindingCache.getInstance().unbind(documentListener.getDocument());
 			documentListener.documentClosed();
 		}
-		if (this.connectedDocuments.isEmpty()) {
+		this.documentsToReplay.remove(path);
+		// keep server alive for a while, in case a document gets reopened
+		scheduleIdleStop();
+	}
+
+	/**
+	 * Stops the language server once no document was connected to it for the keep-alive delay, for example after it
+	 * got started in advance, or once its last document got disconnected.
+	 */
+	void scheduleIdleStop() {
+		if (this.connectedDocuments.isEmpty() && this.documentsToReplay.isEmpty()) {
+			this.lastUsed = System.currentTimeMillis();
+			long keepAlive = getKeepAlive();
+			if (keepAlive > 0) {
+				this.idleStopJob.schedule(keepAlive);
+			} else {
+				stop();
+			}
+		}
+	}
+
+	/**
+	 * @return whether the language server is running without any connected document
+	 */
+	public boolean isIdle() {
+		return isActive() && this.connectedDocuments.isEmpty();
+	}
+
+	/**
+	 * @return the last time, in milliseconds, this language server was used
+	 */
+	public long getLastUsed() {
+		return this.lastUsed;
+	}
+
+	/**
+	 * Stops the language server if no document is connected to it.
+	 */
+	synchronized void stopIfIdle() {
+		if (isIdle()) {
 			stop();
 		}
 	}
 
+	/**
+	 * @return the synchronizer of the connected document with the given URI, or <code>null</code>
+	 */
+	@Nullable DocumentContentSynchronizer getSynchronizer(@NonNull URI fileUri) {
+		return this.connectedDocuments.get(Path.fromOSString(new File(fileUri).getAbsolutePath()));
+	}
+
 	/**
 	 * checks if the wrapper is already connected to the document at the given path
 	 */
@@ -380,8 +703,22 @@ public class ProjectSpecificLanguageServerWrapper {
 		return connectedDocuments.containsKey(location);
 	}
 
+	/**
+	 * @return the language server if it's running and initialized, <code>null</code> otherwise; unlike
+	 *         {@link #getServer()}, this never starts nor waits for it
+	 */
+	@Nullable LanguageServer getInitializedServer() {
+		LanguageServer server = this.languageServer;
+		if (server == null || this.capabilitiesDescriptor == null || !isActive()) {
+			return null;
+		}
+		this.lastUsed = System.currentTimeMillis();
+		return server;
+	}
+
 	@Nullable
 	public LanguageServer getServer() {
+		this.lastUsed = System.currentTimeMillis();
 		try {
 			start();
 		} catch (IOException ex) {
@@ -414,12 +751,18 @@ public class ProjectSpecificLanguageServerWrapper {
 	 */
 	@Nullable
 	public ServerCapabilities getServerCapabilities() {
+		ServerCapabilitiesDescriptor descriptor = this.capabilitiesDescriptor;
+		if (descriptor != null) {
+			return descriptor.getCapabilities();
+		}
 		try {
 			start();
 			if (this.initializeFuture != null) {
 				this.initializeFuture.get(capabilitiesAlreadyRequested ? 0 : 1000, TimeUnit.MILLISECONDS);
 			}
-		} catch (TimeoutException | IOException | InterruptedException | ExecutionException e) {
+		} catch (TimeoutException e) {
+			// still initializing
+		} catch (IOException | InterruptedException | ExecutionException e) {
 			LanguageServerPlugin.logError(e);
 		}
 		this.capabilitiesAlreadyRequested = true;
@@ -430,4 +773,47 @@ public class ProjectSpecificLanguageServerWrapper {
 		}
 	}
 
+	/**
+	 * @return the capabilities of the language server, or <code>null</code> if it's not initialized yet. Doesn't
+	 *         block.
+	 */
+	public @Nullable ServerCapabilitiesDescriptor getCapabilitiesDescriptor() {
+		return this.capabilitiesDescriptor;
+	}
+
+	/**
+	 * Starts the language server if needed.
+	 *
+	 * @return a future completed with the capabilities of the language server once it's initialized, or with
+	 *         <code>null</code> if it can't be started.
+	 */
+	public @NonNull CompletableFuture<ServerCapabilitiesDescriptor> getCapabilitiesDescriptorAsync() {
+		ServerCapabilitiesDescriptor descriptor = this.capabilitiesDescriptor;
+		if (descriptor != null) {
+			return CompletableFuture.completedFuture(descriptor);
+		}
+		try {
+			start();
+		} catch (IOException e) {
+			LanguageServerPlugin.logError(e);
+		}
+		CompletableFuture<InitializeResult> initialization = this.initializeFuture;
+		if (initialization == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return initialization.thenApply(result -> {
+			ServerCapabilitiesDescriptor initialized = this.capabilitiesDescriptor;
+			return initialized != null ? initialized : new ServerCapabilitiesDescriptor(result.getCapabilities());
+		});
+	}
+
+	/**
+	 * Tests the capabilities of the language server without waiting for its initialization: a server which is still
+	 * initializing is considered as matching.
+	 */
+	boolean matchesCapabilities(@Nullable Predicate<ServerCapabilities> request) {
+		ServerCapabilitiesDescriptor descriptor = this.capabilitiesDescriptor;
+		return request == null || descriptor == null || descriptor.supports(request);
+	}
+
 }
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.io.File;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Resolves URIs sent by language servers to workspace resources, and
+ * resources to URIs sent to language servers. The project containing a
+ * location is found by walking a trie of project locations, so the cost
+ * doesn't depend on the number of projects; recent mappings are kept in
+ * bounded LRU caches. Everything is invalidated when a project is created,
+ * opened, closed, moved or deleted.
+ */
+final class ResourceUriResolver {
+
+	private static final int MAX_CACHED_MAPPINGS = 10000;
+
+	private static ResourceUriResolver INSTANCE = null;
+
+	static synchronized ResourceUriResolver getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new ResourceUriResolver();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Disposes the instance, if it was created, typically when the plug-in stops.
+	 */
+	static synchronized void disposeInstance() {
+		if (INSTANCE != null) {
+			INSTANCE.dispose();
+			INSTANCE = null;
+		}
+	}
+
+	/**
+	 * Node of the trie of project locations, one level per device then per path segment
+	 */
+	private static final class ProjectLocationNode {
+		private final Map<String, ProjectLocationNode> children = new HashMap<>();
+		private @Nullable IProject project;
+
+		void add(@NonNull IPath location, @NonNull IProject project) {
+			ProjectLocationNode node = this.children.computeIfAbsent(getDeviceKey(location), s -> new ProjectLocationNode());
+			for (String segment : location.segments()) {
+				node = node.children.computeIfAbsent(segment, s -> new ProjectLocationNode());
+			}
+			node.project = project;
+		}
+
+		/**
+		 * @return the project whose location is the longest prefix of the given path
+		 */
+		@Nullable IProject findProject(@NonNull IPath path) {
+			IProject res = null;
+			ProjectLocationNode node = this.children.get(getDeviceKey(path));
+			if (node == null) {
+				return null;
+			}
+			for (String segment : path.segments()) {
+				node = node.children.get(segment);
+				if (node == null) {
+					break;
+				}
+				if (node.project != null) {
+					res = node.project;
+				}
+			}
+			return res;
+		}
+
+		private static String getDeviceKey(IPath path) {
+			return path.getDevice() != null ? path.getDevice() : ""; //$NON-NLS-1$
+		}
+	}
+
+	private static final class LRUCache<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+
+		LRUCache() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Entry<K, V> eldest) {
+			return size() > MAX_CACHED_MAPPINGS;
+		}
+	}
+
+	private volatile @Nullable ProjectLocationNode projectLocations;
+	private final Map<String, IResource> uriToResource = new LRUCache<>();
+	private final Map<IResource, URI> resourceToUri = new LRUCache<>();
+
+	private final IResourceChangeListener projectsListener = event -> {
+		if (event.getType() == IResourceChangeEvent.PRE_CLOSE || event.getType() == IResourceChangeEvent.PRE_DELETE) {
+			invalidate();
+			return;
+		}
+		IResourceDelta delta = event.getDelta();
+		if (delta == null) {
+			return;
+		}
+		for (IResourceDelta projectDelta : delta.getAffectedChildren()) {
+			if (projectDelta.getKind() != IResourceDelta.CHANGED || (projectDelta.getFlags()
+					& (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION | IResourceDelta.MOVED_FROM | IResourceDelta.MOVED_TO)) != 0) {
+				invalidate();
+				return;
+			}
+		}
+	};
+
+	private ResourceUriResolver() {
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(this.projectsListener,
+				IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+	}
+
+	/**
+	 * @return the existing resource at the location of the given URI, or <code>null</code>
+	 */
+	@Nullable IResource findResource(@NonNull String uri) {
+		IResource res;
+		synchronized (this.uriToResource) {
+			res = this.uriToResource.get(uri);
+		}
+		if (res != null && res.exists()) {
+			return res;
+		}
+		String convertedUri = uri.replace("file:///", "file:/"); //$NON-NLS-1$//$NON-NLS-2$
+		convertedUri = convertedUri.replace("file://", "file:/"); //$NON-NLS-1$//$NON-NLS-2$
+		IPath path = Path.fromOSString(new File(URI.create(convertedUri)).getAbsolutePath());
+		IProject project = getProjectLocations().findProject(path);
+		if (project == null) {
+			return null;
+		}
+		IPath projectRelativePath = path.removeFirstSegments(project.getLocation().segmentCount());
+		res = projectRelativePath.isEmpty() ? project : project.findMember(projectRelativePath);
+		if (res != null) {
+			synchronized (this.uriToResource) {
+				this.uriToResource.put(uri, res);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return the URI of the given resource, as sent to language servers
+	 */
+	@NonNull URI toUri(@NonNull IResource resource) {
+		URI res;
+		synchronized (this.resourceToUri) {
+			res = this.resourceToUri.get(resource);
+		}
+		if (res == null) {
+			res = LSPEclipseUtils.toUri(resource.getLocation());
+			synchronized (this.resourceToUri) {
+				this.resourceToUri.put(resource, res);
+			}
+		}
+		return res;
+	}
+
+	private @NonNull ProjectLocationNode getProjectLocations() {
+		ProjectLocationNode res = this.projectLocations;
+		if (res != null) {
+			return res;
+		}
+		synchronized (this) {
+			res = this.projectLocations;
+			if (res != null) {
+				return res;
+			}
+			res = new ProjectLocationNode();
+			for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+				IPath location = project.getLocation();
+				if (location != null) {
+					res.add(location, project);
+				}
+			}
+			this.projectLocations = res;
+			return res;
+		}
+	}
+
+	void invalidate() {
+		synchronized (this) {
+			this.projectLocations = null;
+		}
+		synchronized (this.uriToResource) {
+			this.uriToResource.clear();
+		}
+		synchronized (this.resourceToUri) {
+			this.resourceToUri.clear();
+		}
+	}
+
+	private void dispose() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this.projectsListener);
+		invalidate();
+	}
+
+}
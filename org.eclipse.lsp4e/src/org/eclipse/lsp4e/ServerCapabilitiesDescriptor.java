@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.lsp4j.ServerCapabilities;
+
+/**
+ * Immutable summary of the capabilities a language server declared when
+ * initialized, with the {@link ServerCapability providers} it supports
+ * computed once as a bitset.
+ *
+ * @since 0.3.0
+ */
+public final class ServerCapabilitiesDescriptor {
+
+	private final @NonNull ServerCapabilities capabilities;
+	private final long providers;
+
+	public ServerCapabilitiesDescriptor(@Nullable ServerCapabilities capabilities) {
+		this.capabilities = capabilities != null ? capabilities : new ServerCapabilities();
+		long bits = 0;
+		for (ServerCapability provider : ServerCapability.values()) {
+			if (provider.test(this.capabilities)) {
+				bits |= 1L << provider.ordinal();
+			}
+		}
+		this.providers = bits;
+	}
+
+	public @NonNull ServerCapabilities getCapabilities() {
+		return this.capabilities;
+	}
+
+	public boolean supports(@NonNull ServerCapability provider) {
+		return (this.providers & (1L << provider.ordinal())) != 0;
+	}
+
+	/**
+	 * @return whether the capabilities match the request, answered from the
+	 *         bitset when the request is a {@link ServerCapability}
+	 */
+	public boolean supports(@NonNull Predicate<ServerCapabilities> request) {
+		if (request instanceof ServerCapability) {
+			return supports((ServerCapability) request);
+		}
+		return request.test(this.capabilities);
+	}
+
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.util.function.Predicate;
+
+import org.eclipse.lsp4j.ServerCapabilities;
+
+/**
+ * Providers a language server can declare in its {@link ServerCapabilities}.
+ * As they are predicates, they can be used as capability requests of
+ * {@link LanguageServiceAccessor}; they're then answered from the
+ * {@link ServerCapabilitiesDescriptor} of the servers, without evaluating
+ * their capabilities again.
+ *
+ * @since 0.3.0
+ */
+public enum ServerCapability implements Predicate<ServerCapabilities> {
+
+	COMPLETION(capabilities -> capabilities.getCompletionProvider() != null),
+	HOVER(capabilities -> Boolean.TRUE.equals(capabilities.getHoverProvider())),
+	SIGNATURE_HELP(capabilities -> capabilities.getSignatureHelpProvider() != null),
+	DEFINITION(capabilities -> Boolean.TRUE.equals(capabilities.getDefinitionProvider())),
+	REFERENCES(capabilities -> Boolean.TRUE.equals(capabilities.getReferencesProvider())),
+	DOCUMENT_HIGHLIGHT(capabilities -> Boolean.TRUE.equals(capabilities.getDocumentHighlightProvider())),
+	DOCUMENT_SYMBOL(capabilities -> Boolean.TRUE.equals(capabilities.getDocumentSymbolProvider())),
+	WORKSPACE_SYMBOL(capabilities -> Boolean.TRUE.equals(capabilities.getWorkspaceSymbolProvider())),
+	CODE_ACTION(capabilities -> Boolean.TRUE.equals(capabilities.getCodeActionProvider())),
+	CODE_LENS(capabilities -> capabilities.getCodeLensProvider() != null),
+	FORMATTING(capabilities -> Boolean.TRUE.equals(capabilities.getDocumentFormattingProvider())),
+	RANGE_FORMATTING(capabilities -> Boolean.TRUE.equals(capabilities.getDocumentRangeFormattingProvider())),
+	ON_TYPE_FORMATTING(capabilities -> capabilities.getDocumentOnTypeFormattingProvider() != null),
+	RENAME(capabilities -> Boolean.TRUE.equals(capabilities.getRenameProvider())),
+	DOCUMENT_LINK(capabilities -> capabilities.getDocumentLinkProvider() != null),
+	EXECUTE_COMMAND(capabilities -> capabilities.getExecuteCommandProvider() != null);
+
+	private final Predicate<ServerCapabilities> predicate;
+
+	private ServerCapability(Predicate<ServerCapabilities> predicate) {
+		this.predicate = predicate;
+	}
+
+	@Override
+	public boolean test(ServerCapabilities capabilities) {
+		return capabilities != null && this.predicate.test(capabilities);
+	}
+
+}
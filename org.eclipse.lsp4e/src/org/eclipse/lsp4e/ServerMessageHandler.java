@@ -15,6 +15,7 @@ import java.util.Date;
 import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
@@ -67,8 +68,11 @@ public class ServerMessageHandler {
 
 	}
 
-	public static void logMessage(IProject project, String serverLabel, MessageParams params) {
-		MessageConsole console = findConsole(String.format(NAME_PATTERN, serverLabel, project.getName()));
+	/**
+	 * @param project the project served by the language server, or <code>null</code> if it serves the whole workspace
+	 */
+	public static void logMessage(@Nullable IProject project, String serverLabel, MessageParams params) {
+		MessageConsole console = findConsole(project != null ? String.format(NAME_PATTERN, serverLabel, project.getName()) : serverLabel);
 		console.newMessageStream().println(String.format("[%s]\t%s", params.getType(), params.getMessage())); //$NON-NLS-1$
 	}
 
@@ -83,7 +87,7 @@ public class ServerMessageHandler {
 		return null;
 	}
 
-	private static MessageConsole findConsole(String name) {
+	static MessageConsole findConsole(String name) {
 		ConsolePlugin plugin = ConsolePlugin.getDefault();
 		IConsoleManager conMan = plugin.getConsoleManager();
 		IConsole[] existing = conMan.getConsoles();
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.text.edits.ReplaceEdit;
+
+/**
+ * Turns the replacement of a region of a text into the minimal replacements of
+ * the parts actually changing. Formatters often replace the whole document, or
+ * large parts of it, while only a few characters change; applying the minimal
+ * edits keeps document events, re-parsing by listeners, changes sent back to
+ * language servers and undo records small.
+ * <p>
+ * Lines are compared first, then characters of the changed lines, both with
+ * Myers' difference algorithm. When texts differ too much, the region is
+ * replaced as a whole, except for its common beginning and end.
+ */
+final class TextEditNormalizer {
+
+	/**
+	 * Maximum number of inserted or deleted lines, or characters, looked for
+	 */
+	private static final int MAX_DIFFERENCES = 1000;
+	/**
+	 * Maximum length of the changed parts compared character by character
+	 */
+	private static final int MAX_CHARACTER_DIFF_LENGTH = 10000;
+	/**
+	 * Changes separated by fewer equal characters are merged, so similar
+	 * texts aren't split into many single character edits
+	 */
+	private static final int MIN_EQUAL_CHARACTERS = 3;
+
+	private TextEditNormalizer() {
+		// only static methods
+	}
+
+	/**
+	 * @param text
+	 *            the current text
+	 * @param offset
+	 *            the offset of the replaced region
+	 * @param length
+	 *            the length of the replaced region
+	 * @param newText
+	 *            the text replacing the region
+	 * @return the minimal edits, in order and not overlapping, producing the
+	 *         same text as the replacement of the region
+	 */
+	static @NonNull List<ReplaceEdit> normalize(@NonNull String text, int offset, int length, @Nullable String newText) {
+		String oldText = text.substring(offset, offset + length);
+		String replacement = newText != null ? newText : ""; //$NON-NLS-1$
+		List<ReplaceEdit> res = new ArrayList<>();
+		int[] oldLineStarts = getLineStarts(oldText);
+		int[] newLineStarts = getLineStarts(replacement);
+		Map<String, Integer> lineIds = new HashMap<>();
+		List<int[]> changedLines = diff(getLineIds(oldText, oldLineStarts, lineIds),
+				getLineIds(replacement, newLineStarts, lineIds), 1);
+		if (changedLines == null) {
+			addEdits(res, offset, oldText, 0, oldText.length(), replacement, 0, replacement.length());
+			return res;
+		}
+		for (int[] change : changedLines) {
+			addEdits(res, offset, oldText, oldLineStarts[change[0]], oldLineStarts[change[1]], replacement,
+					newLineStarts[change[2]], newLineStarts[change[3]]);
+		}
+		return res;
+	}
+
+	/**
+	 * Adds the edits replacing the given range of the old text with the given
+	 * range of the new text, comparing their characters
+	 */
+	private static void addEdits(List<ReplaceEdit> res, int offset, String oldText, int oldStart, int oldEnd,
+			String newText, int newStart, int newEnd) {
+		if (oldEnd - oldStart <= MAX_CHARACTER_DIFF_LENGTH && newEnd - newStart <= MAX_CHARACTER_DIFF_LENGTH) {
+			List<int[]> changes = diff(getCharacters(oldText, oldStart, oldEnd), getCharacters(newText, newStart, newEnd),
+					MIN_EQUAL_CHARACTERS);
+			if (changes != null) {
+				for (int[] change : changes) {
+					res.add(new ReplaceEdit(offset + oldStart + change[0], change[1] - change[0],
+							newText.substring(newStart + change[2], newStart + change[3])));
+				}
+				return;
+			}
+		}
+		// too different, replace all but the common beginning and end
+		int maxCommon = Math.min(oldEnd - oldStart, newEnd - newStart);
+		int prefix = 0;
+		while (prefix < maxCommon && oldText.charAt(oldStart + prefix) == newText.charAt(newStart + prefix)) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < maxCommon - prefix && oldText.charAt(oldEnd - 1 - suffix) == newText.charAt(newEnd - 1 - suffix)) {
+			suffix++;
+		}
+		if (oldEnd - oldStart == prefix + suffix && newEnd - newStart == prefix + suffix) {
+			return;
+		}
+		res.add(new ReplaceEdit(offset + oldStart + prefix, oldEnd - oldStart - prefix - suffix,
+				newText.substring(newStart + prefix, newEnd - suffix)));
+	}
+
+	/**
+	 * @return the offsets at which lines, including their delimiter, start,
+	 *         followed by the length of the text
+	 */
+	private static int[] getLineStarts(String text) {
+		int[] res = new int[16];
+		int count = 1;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+				i++;
+			} else if (c != '\r' && c != '\n') {
+				continue;
+			}
+			if (count == res.length) {
+				res = Arrays.copyOf(res, count * 2);
+			}
+			res[count++] = i + 1;
+		}
+		if (res[count - 1] != text.length()) {
+			// last line has no delimiter
+			if (count == res.length) {
+				res = Arrays.copyOf(res, count + 1);
+			}
+			res[count++] = text.length();
+		}
+		return Arrays.copyOf(res, count);
+	}
+
+	private static int[] getLineIds(String text, int[] lineStarts, Map<String, Integer> lineIds) {
+		int[] res = new int[lineStarts.length - 1];
+		for (int i = 0; i < res.length; i++) {
+			String line = text.substring(lineStarts[i], lineStarts[i + 1]);
+			Integer id = lineIds.get(line);
+			if (id == null) {
+				id = lineIds.size();
+				lineIds.put(line, id);
+			}
+			res[i] = id;
+		}
+		return res;
+	}
+
+	private static int[] getCharacters(String text, int start, int end) {
+		int[] res = new int[end - start];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = text.charAt(start + i);
+		}
+		return res;
+	}
+
+	/**
+	 * Compares two sequences with Myers' algorithm.
+	 *
+	 * @param minEqualLength
+	 *            changes separated by fewer equal elements are merged
+	 * @return the changes, in order, as <code>{oldStart, oldEnd, newStart,
+	 *         newEnd}</code> element ranges, or <code>null</code> if there
+	 *         are more than {@link #MAX_DIFFERENCES} differences
+	 */
+	private static @Nullable List<int[]> diff(int[] a, int[] b, int minEqualLength) {
+		int n = a.length;
+		int m = b.length;
+		int max = Math.min(n + m, MAX_DIFFERENCES);
+		int offset = max + 1;
+		// furthest x reached on each diagonal k = x - y
+		int[] v = new int[2 * max + 3];
+		// v at the beginning of each step, for diagonals -d..d
+		List<int[]> trace = new ArrayList<>();
+		int d;
+		search: for (d = 0; d <= max; d++) {
+			trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+			for (int k = -d; k <= d; k += 2) {
+				int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]) ? v[offset + k + 1]
+						: v[offset + k - 1] + 1;
+				int y = x - k;
+				while (x < n && y < m && a[x] == b[y]) {
+					x++;
+					y++;
+				}
+				v[offset + k] = x;
+				if (x >= n && y >= m) {
+					break search;
+				}
+			}
+		}
+		if (d > max) {
+			return null;
+		}
+
+		// walk back the path, one insertion or deletion per step
+		List<int[]> steps = new ArrayList<>(d);
+		int x = n;
+		int y = m;
+		for (; d > 0; d--) {
+			int[] previous = trace.get(d);
+			int k = x - y;
+			boolean insertion = k == -d || (k != d && previous[k - 1 + d] < previous[k + 1 + d]);
+			int previousK = insertion ? k + 1 : k - 1;
+			int previousX = previous[previousK + d];
+			int previousY = previousX - previousK;
+			int stepX = insertion ? previousX : previousX + 1;
+			steps.add(new int[] { previousX, previousY, stepX, stepX - k });
+			x = previousX;
+			y = previousY;
+		}
+
+		List<int[]> res = new ArrayList<>();
+		for (int i = steps.size() - 1; i >= 0; i--) {
+			int[] step = steps.get(i);
+			int[] last = res.isEmpty() ? null : res.get(res.size() - 1);
+			if (last != null && step[0] - last[1] < minEqualLength) {
+				last[1] = step[2];
+				last[3] = step[3];
+			} else {
+				res.add(new int[] { step[0], step[2], step[1], step[3] });
+			}
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.content.IContentDescription;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.PlatformUI;
+
+/**
+ * Applies {@link WorkspaceEdit}s, with all the edits of a file applied at
+ * once:
+ * <ul>
+ * <li>files opened in a buffer get their document modified in the UI thread,
+ * as a single undoable change, see
+ * {@link LSPEclipseUtils#applyEdits(org.eclipse.jface.text.IDocument, List)}.
+ * The buffer is saved if it wasn't dirty, as refactorings do.</li>
+ * <li>other files are rewritten by copying their content to a temporary file
+ * through fixed size buffers, replacing edited ranges on the way, so no
+ * document is created for them.</li>
+ * </ul>
+ * Files are saved and rewritten in a single workspace operation, so a single
+ * resource delta is sent for the whole edit.
+ */
+final class WorkspaceEditApplier {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Comparator<Position> POSITION_ORDER = Comparator.comparingInt(Position::getLine)
+			.thenComparingInt(Position::getCharacter);
+	/**
+	 * Insertions first, so they're not taken as overlapping a replacement starting at the same position
+	 */
+	private static final Comparator<TextEdit> EDIT_ORDER = Comparator
+			.comparing((TextEdit edit) -> edit.getRange().getStart(), POSITION_ORDER)
+			.thenComparing(edit -> edit.getRange().getEnd(), POSITION_ORDER);
+
+	private WorkspaceEditApplier() {
+		// only static methods
+	}
+
+	static void apply(@NonNull WorkspaceEdit workspaceEdit) {
+		if (workspaceEdit.getChanges() == null) {
+			return;
+		}
+		ITextFileBufferManager bufferManager = FileBuffers.getTextFileBufferManager();
+		Map<IFile, List<TextEdit>> documentEdits = new LinkedHashMap<>();
+		Map<IFile, List<TextEdit>> fileEdits = new LinkedHashMap<>();
+		for (Entry<String, List<TextEdit>> entry : workspaceEdit.getChanges().entrySet()) {
+			IResource resource = LSPEclipseUtils.findResourceFor(entry.getKey());
+			if (!(resource instanceof IFile)) {
+				LanguageServerPlugin.logError("Edits of " + entry.getKey() + " ignored, it's not a workspace file", null); //$NON-NLS-1$ //$NON-NLS-2$
+				continue;
+			}
+			IFile file = (IFile) resource;
+			List<TextEdit> edits = entry.getValue().stream().filter(Objects::nonNull).collect(Collectors.toList());
+			if (edits.isEmpty()) {
+				continue;
+			}
+			if (bufferManager.getTextFileBuffer(file.getFullPath(), LocationKind.IFILE) != null) {
+				documentEdits.computeIfAbsent(file, key -> new ArrayList<>()).addAll(edits);
+			} else {
+				fileEdits.computeIfAbsent(file, key -> new ArrayList<>()).addAll(edits);
+			}
+		}
+
+		// documents are modified before locking the workspace, which the UI thread may be waiting for
+		List<ITextFileBuffer> buffersToSave = new ArrayList<>();
+		if (!documentEdits.isEmpty()) {
+			runInUIThread(() -> {
+				for (Entry<IFile, List<TextEdit>> entry : documentEdits.entrySet()) {
+					ITextFileBuffer buffer = bufferManager.getTextFileBuffer(entry.getKey().getFullPath(), LocationKind.IFILE);
+					if (buffer == null) {
+						// closed meanwhile
+						fileEdits.put(entry.getKey(), entry.getValue());
+						continue;
+					}
+					boolean wasDirty = buffer.isDirty();
+					LSPEclipseUtils.applyEdits(buffer.getDocument(), entry.getValue());
+					if (!wasDirty) {
+						buffersToSave.add(buffer);
+					}
+				}
+			});
+		}
+		if (buffersToSave.isEmpty() && fileEdits.isEmpty()) {
+			return;
+		}
+
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
+		ISchedulingRule rule = null;
+		for (IFile file : documentEdits.keySet()) {
+			rule = MultiRule.combine(rule, ruleFactory.modifyRule(file));
+		}
+		for (IFile file : fileEdits.keySet()) {
+			rule = MultiRule.combine(rule, ruleFactory.modifyRule(file));
+		}
+		try {
+			workspace.run((IWorkspaceRunnable) monitor -> {
+				for (ITextFileBuffer buffer : buffersToSave) {
+					try {
+						buffer.commit(monitor, false);
+					} catch (CoreException e) {
+						LanguageServerPlugin.logError(e);
+					}
+				}
+				for (Entry<IFile, List<TextEdit>> entry : fileEdits.entrySet()) {
+					try {
+						applyEdits(entry.getKey(), entry.getValue(), monitor);
+					} catch (CoreException | IOException | BadLocationException e) {
+						LanguageServerPlugin.logError("Edits of " + entry.getKey().getFullPath() + " not applied", e); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+				}
+			}, rule, IWorkspace.AVOID_UPDATE, new NullProgressMonitor());
+		} catch (CoreException e) {
+			LanguageServerPlugin.logError(e);
+		}
+	}
+
+	private static void runInUIThread(@NonNull Runnable runnable) {
+		if (Display.getCurrent() != null || !PlatformUI.isWorkbenchRunning()) {
+			runnable.run();
+		} else {
+			PlatformUI.getWorkbench().getDisplay().syncExec(runnable);
+		}
+	}
+
+	/**
+	 * Rewrites the file with the edits applied, without loading its whole
+	 * content. The file is left untouched if edits can't be applied.
+	 */
+	private static void applyEdits(@NonNull IFile file, @NonNull List<TextEdit> edits, IProgressMonitor monitor)
+			throws CoreException, IOException, BadLocationException {
+		List<TextEdit> sortedEdits = new ArrayList<>(edits);
+		sortedEdits.sort(EDIT_ORDER);
+		for (int i = 1; i < sortedEdits.size(); i++) {
+			if (POSITION_ORDER.compare(sortedEdits.get(i).getRange().getStart(), sortedEdits.get(i - 1).getRange().getEnd()) < 0) {
+				throw new BadLocationException("Overlapping edits " + sortedEdits.get(i - 1).getRange() + " and " //$NON-NLS-1$ //$NON-NLS-2$
+						+ sortedEdits.get(i).getRange());
+			}
+		}
+		String charset = file.getCharset();
+		IContentDescription description = file.getContentDescription();
+		byte[] byteOrderMark = description != null ? (byte[]) description.getProperty(IContentDescription.BYTE_ORDER_MARK) : null;
+		File newContent = File.createTempFile("lsp4e", null); //$NON-NLS-1$
+		try {
+			try (InputStream input = file.getContents();
+					OutputStream output = new BufferedOutputStream(new FileOutputStream(newContent), BUFFER_SIZE)) {
+				if (byteOrderMark != null) {
+					// not part of the text positions refer to
+					for (int i = 0; i < byteOrderMark.length; i++) {
+						input.read();
+					}
+					output.write(byteOrderMark);
+				}
+				Reader reader = new BufferedReader(new InputStreamReader(input, charset), BUFFER_SIZE);
+				Writer writer = new OutputStreamWriter(output, charset);
+				applyEdits(reader, writer, sortedEdits);
+				writer.flush();
+			}
+			try (InputStream input = new BufferedInputStream(new FileInputStream(newContent), BUFFER_SIZE)) {
+				file.setContents(input, IResource.KEEP_HISTORY, monitor);
+			}
+		} finally {
+			newContent.delete();
+		}
+	}
+
+	/**
+	 * Copies the text, replacing the ranges of the edits, which must be sorted
+	 * and not overlapping. Edits after the end of the text are appended.
+	 */
+	static void applyEdits(@NonNull Reader reader, @NonNull Writer writer, @NonNull List<TextEdit> sortedEdits) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		int line = 0;
+		int character = 0;
+		boolean afterCarriageReturn = false;
+		int editIndex = 0;
+		@Nullable TextEdit replacing = null;
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			for (int i = 0; i < read; i++) {
+				char c = buffer[i];
+				if (afterCarriageReturn && c != '\n') {
+					line++;
+					character = 0;
+				}
+				afterCarriageReturn = false;
+				// apply edits starting at (line, character), stop skipping replaced text ending there
+				while (true) {
+					if (replacing != null) {
+						if (compare(replacing.getRange().getEnd(), line, character) > 0) {
+							break;
+						}
+						replacing = null;
+						editIndex++;
+					}
+					if (editIndex == sortedEdits.size()
+							|| compare(sortedEdits.get(editIndex).getRange().getStart(), line, character) > 0) {
+						break;
+					}
+					TextEdit edit = sortedEdits.get(editIndex);
+					if (edit.getNewText() != null) {
+						writer.write(edit.getNewText());
+					}
+					if (compare(edit.getRange().getEnd(), line, character) > 0) {
+						replacing = edit;
+					} else {
+						editIndex++;
+					}
+				}
+				if (replacing == null) {
+					writer.write(c);
+				}
+				if (c == '\n') {
+					line++;
+					character = 0;
+				} else {
+					character++;
+					afterCarriageReturn = c == '\r';
+				}
+			}
+		}
+		if (replacing != null) {
+			editIndex++;
+		}
+		for (; editIndex < sortedEdits.size(); editIndex++) {
+			if (sortedEdits.get(editIndex).getNewText() != null) {
+				writer.write(sortedEdits.get(editIndex).getNewText());
+			}
+		}
+	}
+
+	private static int compare(@NonNull Position position, int line, int character) {
+		return position.getLine() != line ? Integer.compare(position.getLine(), line)
+				: Integer.compare(position.getCharacter(), character);
+	}
+
+}
@@ -27,6 +27,7 @@ import org.eclipse.lsp4e.LanguageServerPlugin;
 import org.eclipse.lsp4e.LanguageServersRegistry;
 import org.eclipse.lsp4e.LanguageServersRegistry.LanguageServerDefinition;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4e.operations.diagnostics.LSPDiagnosticsToMarkers;
 import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.CodeActionContext;
@@ -114,7 +115,7 @@ public class LSPCodeActionMarkerResolution implements IMarkerResolutionGenerator
 					}
 				}
 				if (languageServers.isEmpty()) { // if it's not there, try any other server
-					languageServers.addAll(LanguageServiceAccessor.getLanguageServers(file, capabilities -> Boolean.TRUE.equals(capabilities.getCodeActionProvider())));
+					languageServers.addAll(LanguageServiceAccessor.getLanguageServers(file, ServerCapability.CODE_ACTION));
 				}
 				List<CompletableFuture<?>> futures = new ArrayList<>();
 				for (LanguageServer ls : languageServers) {
@@ -28,6 +28,7 @@ import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.CodeActionContext;
 import org.eclipse.lsp4j.CodeActionParams;
@@ -61,7 +62,7 @@ public class LSPCodeActionsMenu extends ContributionItem implements IWorkbenchCo
 			}
 			infos = LanguageServiceAccessor.getLSPDocumentInfosFor(
 					document,
-					(capabilities) -> Boolean.TRUE.equals(capabilities.getCodeActionProvider()));
+					ServerCapability.CODE_ACTION);
 			ITextSelection selection = (ITextSelection) textEditor.getSelectionProvider().getSelection();
 			try {
 				this.range = new Range(
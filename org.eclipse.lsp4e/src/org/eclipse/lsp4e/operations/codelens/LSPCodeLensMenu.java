@@ -21,6 +21,7 @@ import org.eclipse.jface.action.ContributionItem;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.CodeLens;
 import org.eclipse.lsp4j.CodeLensParams;
@@ -45,7 +46,7 @@ public class LSPCodeLensMenu extends ContributionItem implements IWorkbenchContr
 		if (editor instanceof ITextEditor) {
 			info = LanguageServiceAccessor.getLSPDocumentInfoFor(
 					LSPEclipseUtils.getDocument((ITextEditor) editor),
-					(capabilities) -> Boolean.TRUE.equals(capabilities.getCodeLensProvider()));
+					ServerCapability.CODE_LENS);
 			// TODO should be ServerCapabilities::isCodeLensProvider, when available in ls-api
 		}
 	}
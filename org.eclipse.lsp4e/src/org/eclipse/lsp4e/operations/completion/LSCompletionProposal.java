@@ -73,6 +73,7 @@ public class LSCompletionProposal
 	private IRegion selection;
 	private LinkedPosition firstPosition;
 	private LSPDocumentInfo info;
+	private int version = -1;
 
 	public LSCompletionProposal(@NonNull CompletionItem item, int offset, LSPDocumentInfo info) {
 		this.item = item;
@@ -81,6 +82,14 @@ public class LSCompletionProposal
 		this.bestOffset = getPrefixCompletionStart(info.getDocument(), offset);
 	}
 
+	/**
+	 * @param version the version of the document the completion was requested for, see {@link LSPDocumentInfo#getVersion()}
+	 */
+	public LSCompletionProposal(@NonNull CompletionItem item, int offset, LSPDocumentInfo info, int version) {
+		this(item, offset, info);
+		this.version = version;
+	}
+
 	public int getBestOffset() {
 		return this.bestOffset;
 	}
@@ -309,6 +318,12 @@ public class LSCompletionProposal
 				Position start = LSPEclipseUtils.toPosition(this.bestOffset, document);
 				Position end = LSPEclipseUtils.toPosition(offset, document); // need 2 distinct objects
 				textEdit = new TextEdit(new Range(start, end), insertText);
+			} else if (this.version >= 0) {
+				// document may have changed since completion was requested, e.g. characters were typed
+				Range range = this.info.remap(textEdit.getRange(), this.version);
+				if (range != null) {
+					textEdit = new TextEdit(range, textEdit.getNewText());
+				}
 			} else if (offset > this.initialOffset) {
 				// characters were added after completion was activated
 				int shift = offset - this.initialOffset;
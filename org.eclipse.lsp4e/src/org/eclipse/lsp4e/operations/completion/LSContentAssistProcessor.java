@@ -42,6 +42,7 @@ import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionList;
@@ -86,11 +87,12 @@ public class LSContentAssistProcessor implements IContentAssistProcessor {
 					offset, viewer.getDocument());
 			List<LSCompletionProposal> lsProposals = Collections.synchronizedList(new ArrayList<>());
 			// starts requests to various LS
-			Stream<CompletableFuture<Void>> requests = infos.stream().map(info ->
-				info.getLanguageClient().getTextDocumentService().completion(param).thenAccept(items ->
-				lsProposals.addAll(toProposals(offset, items, info))
-				)
-			);
+			Stream<CompletableFuture<Void>> requests = infos.stream().map(info -> {
+				int version = info.getVersion();
+				return info.getLanguageClient().getTextDocumentService().completion(param).thenAccept(items ->
+					lsProposals.addAll(toProposals(offset, version, items, info))
+				);
+			});
 			// wait for them to complete
 			requests.forEach(future -> {
 				try {
@@ -150,7 +152,7 @@ public class LSContentAssistProcessor implements IContentAssistProcessor {
 		}
 	}
 
-	private List<LSCompletionProposal> toProposals(int offset, Either<List<CompletionItem>, CompletionList> completionList, LSPDocumentInfo info) {
+	private List<LSCompletionProposal> toProposals(int offset, int version, Either<List<CompletionItem>, CompletionList> completionList, LSPDocumentInfo info) {
 		if (completionList == null) {
 			return Collections.emptyList();
 		}
@@ -163,7 +165,7 @@ public class LSContentAssistProcessor implements IContentAssistProcessor {
 		List<LSCompletionProposal> proposals = new ArrayList<>();
 		for (CompletionItem item : items) {
 			if (item != null) {
-				LSCompletionProposal proposal = new LSCompletionProposal(item, offset, info);
+				LSCompletionProposal proposal = new LSCompletionProposal(item, offset, info, version);
 				if (proposal.validate(info.getDocument(), offset, null)) {
 					proposals.add(proposal);
 				}
@@ -243,7 +245,7 @@ public class LSContentAssistProcessor implements IContentAssistProcessor {
 			@Override
 			protected IStatus run(IProgressMonitor monitor) {
 				infos = Collections.unmodifiableList(LanguageServiceAccessor.getLSPDocumentInfosFor(document,
-						capabilities -> capabilities.getCompletionProvider() != null));
+						ServerCapability.COMPLETION));
 				Set<Character> triggerChars = new HashSet<>();
 				Set<Character> contextTriggerChars = new HashSet<>();
 				if (infos != null) {
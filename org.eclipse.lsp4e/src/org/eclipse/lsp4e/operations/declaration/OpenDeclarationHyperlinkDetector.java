@@ -12,12 +12,14 @@
 package org.eclipse.lsp4e.operations.declaration;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
@@ -29,8 +31,10 @@ import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.TextDocumentPositionParams;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.PlatformUI;
 
@@ -71,11 +75,15 @@ public class OpenDeclarationHyperlinkDetector extends AbstractHyperlinkDetector
 
 	@Override
 	public IHyperlink[] detectHyperlinks(ITextViewer textViewer, IRegion region, boolean canShowMultipleHyperlinks) {
-		final LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(textViewer.getDocument(), (capabilities) -> Boolean.TRUE.equals(capabilities.getDefinitionProvider()));
-		if (info != null) {
+		// don't wait for language servers to start, links are available once they are ready
+		final List<@NonNull LSPDocumentInfo> infos = LanguageServiceAccessor
+				.getLSPDocumentInfosForAsync(textViewer.getDocument(), ServerCapability.DEFINITION)
+				.getNow(Collections.emptyList());
+		if (!infos.isEmpty()) {
+			LSPDocumentInfo info = infos.get(0);
 			try {
-				CompletableFuture<List<? extends Location>> documentHighlight = info.getLanguageClient().getTextDocumentService()
-						.definition(LSPEclipseUtils.toTextDocumentPosistionParams(info.getFileUri(), region.getOffset(), info.getDocument()));
+				TextDocumentPositionParams params = LSPEclipseUtils.toTextDocumentPosistionParams(info.getFileUri(), region.getOffset(), info.getDocument());
+				CompletableFuture<List<? extends Location>> documentHighlight = info.sendRequest(service -> service.definition(params));
 				List<? extends Location> locations = documentHighlight.get(2, TimeUnit.SECONDS);
 				if (locations == null || locations.isEmpty()) {
 					return null;
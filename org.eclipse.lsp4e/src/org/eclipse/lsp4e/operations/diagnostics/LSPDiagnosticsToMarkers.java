@@ -10,11 +10,18 @@
  *******************************************************************************/
 package org.eclipse.lsp4e.operations.diagnostics;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.eclipse.core.filebuffers.FileBuffers;
 import org.eclipse.core.filebuffers.ITextFileBuffer;
@@ -24,14 +31,20 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.lsp4e.DocumentSnapshot;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
+import org.eclipse.lsp4e.LargeDocumentPolicy;
+import org.eclipse.lsp4e.LineIndex;
 import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.ui.texteditor.MarkerUtilities;
 
@@ -40,28 +53,56 @@ public class LSPDiagnosticsToMarkers implements Consumer<PublishDiagnosticsParam
 	public static final String LSP_DIAGNOSTIC = "lspDiagnostic"; //$NON-NLS-1$
 	public static final String LANGUAGE_SERVER_ID = "languageServerId"; //$NON-NLS-1$
 	public static final String LS_DIAGNOSTIC_MARKER_TYPE = "org.eclipse.lsp4e.diagnostic"; //$NON-NLS-1$
-	private final @NonNull IProject project;
+	private final @NonNull IResource fallbackResource;
 	private final @NonNull String languageServerId;
+	/**
+	 * Start offset, end offset and start line of the diagnostics being turned
+	 * into markers by {@link #accept(PublishDiagnosticsParams)}, computed at
+	 * once for all of them
+	 */
+	private @Nullable Map<Diagnostic, int[]> acceptedPositions;
 
 	public LSPDiagnosticsToMarkers(@NonNull IProject project, @NonNull String serverId) {
-		this.project = project;
+		this((IResource) project, serverId);
+	}
+
+	/**
+	 * For language servers serving the whole workspace: diagnostics for unknown
+	 * resources are attached to the workspace root.
+	 */
+	public LSPDiagnosticsToMarkers(@NonNull String serverId) {
+		this(ResourcesPlugin.getWorkspace().getRoot(), serverId);
+	}
+
+	private LSPDiagnosticsToMarkers(@NonNull IResource fallbackResource, @NonNull String serverId) {
+		this.fallbackResource = fallbackResource;
 		this.languageServerId = serverId;
 	}
 
 	@Override
-	public void accept(PublishDiagnosticsParams diagnostics) {
+	public synchronized void accept(PublishDiagnosticsParams diagnostics) {
 		try {
 			// fix issue with file:/// vs file:/
 			String uri = diagnostics.getUri();
 			IResource resource = LSPEclipseUtils.findResourceFor(uri);
 			if (resource == null || !resource.exists()) {
-				resource = project;
+				resource = fallbackResource;
 			}
 			Set<IMarker> remainingMarkers = new HashSet<>(
 					Arrays.asList(resource.findMarkers(LS_DIAGNOSTIC_MARKER_TYPE, false, IResource.DEPTH_ONE)));
 			remainingMarkers.removeIf(marker -> !Objects.equals(marker.getAttribute(LANGUAGE_SERVER_ID, ""), languageServerId)); //$NON-NLS-1$
-			for (Diagnostic diagnostic : diagnostics.getDiagnostics()) {
-				IMarker associatedMarker = getExistingMarkerFor(resource, diagnostic, remainingMarkers);
+			List<Diagnostic> diagnosticsToShow = getDiagnosticsToShow(resource, diagnostics.getDiagnostics());
+			int[] markerPositions = getMarkerPositions(resource, diagnosticsToShow);
+			Map<Diagnostic, int[]> positions = new IdentityHashMap<>();
+			for (int i = 0; markerPositions != null && i < diagnosticsToShow.size(); i++) {
+				positions.put(diagnosticsToShow.get(i), Arrays.copyOfRange(markerPositions, 3 * i, 3 * i + 3));
+			}
+			this.acceptedPositions = positions;
+			for (Diagnostic diagnostic : diagnosticsToShow) {
+				int[] position = positions.get(diagnostic);
+				IMarker associatedMarker = position != null && position[0] >= 0
+						? getExistingMarkerFor(diagnostic, position[0], position[1], remainingMarkers)
+						: null;
 				if (associatedMarker == null) {
 					associatedMarker = resource.createMarker(LS_DIAGNOSTIC_MARKER_TYPE);
 				} else {
@@ -74,61 +115,115 @@ public class LSPDiagnosticsToMarkers implements Consumer<PublishDiagnosticsParam
 			}
 		} catch (CoreException ex) {
 			LanguageServerPlugin.logError(ex);
+		} finally {
+			this.acceptedPositions = null;
 		}
 	}
 
-	protected void updateMarker(IResource resource, Diagnostic diagnostic, IMarker marker) {
-		try {
-			marker.setAttribute(LSP_DIAGNOSTIC, diagnostic);
-			marker.setAttribute(LANGUAGE_SERVER_ID, this.languageServerId);
-			marker.setAttribute(IMarker.MESSAGE, diagnostic.getMessage());
-			marker.setAttribute(IMarker.SEVERITY, LSPEclipseUtils.toEclipseMarkerSeverity(diagnostic.getSeverity()));
-			if (resource.getType() != IResource.FILE) {
-				return;
-			}
-			IFile file = (IFile) resource;
-			ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
-			ITextFileBuffer textFileBuffer = manager.getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+	/**
+	 * @return the diagnostics to turn into markers; for large files, only the most severe ones up to
+	 *         {@link LargeDocumentPolicy#getMaxDiagnostics()}
+	 */
+	private static List<Diagnostic> getDiagnosticsToShow(IResource resource, List<Diagnostic> diagnostics) {
+		int maxDiagnostics = LargeDocumentPolicy.getMaxDiagnostics();
+		if (maxDiagnostics <= 0 || diagnostics.size() <= maxDiagnostics || resource.getType() != IResource.FILE
+				|| !LargeDocumentPolicy.isLarge((IFile) resource)) {
+			return diagnostics;
+		}
+		return diagnostics.stream()
+				.sorted(Comparator.comparing(Diagnostic::getSeverity, Comparator.nullsLast(Comparator.<DiagnosticSeverity> naturalOrder())))
+				.limit(maxDiagnostics)
+				.collect(Collectors.toList());
+	}
 
-			if (textFileBuffer == null) {
-				manager.connect(file.getFullPath(), LocationKind.IFILE, new NullProgressMonitor());
-				textFileBuffer = manager.getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+	/**
+	 * Converts the ranges of all the diagnostics of a file at once, from a
+	 * single snapshot of its document: diagnostics are received out of the UI
+	 * thread, and there may be many of them.
+	 *
+	 * @return for each diagnostic, its start offset, end offset and start line,
+	 *         -1 for ranges out of the document; <code>null</code> if the
+	 *         resource isn't a file
+	 */
+	private static int @Nullable [] getMarkerPositions(IResource resource, List<Diagnostic> diagnostics) throws CoreException {
+		if (resource.getType() != IResource.FILE || diagnostics.isEmpty()) {
+			return null;
+		}
+		LineIndex lineIndex = DocumentSnapshot.of(getDocument((IFile) resource)).getLineIndex();
+		List<Position> positions = new ArrayList<>(2 * diagnostics.size());
+		for (Diagnostic diagnostic : diagnostics) {
+			positions.add(diagnostic.getRange().getStart());
+			positions.add(diagnostic.getRange().getEnd());
+		}
+		int[] offsets = lineIndex.toOffsets(positions);
+		int[] starts = new int[diagnostics.size()];
+		for (int i = 0; i < starts.length; i++) {
+			starts[i] = offsets[2 * i] >= 0 ? Math.min(offsets[2 * i], lineIndex.getLength()) : -1;
+		}
+		Position[] startPositions = lineIndex.toPositions(starts);
+		int[] res = new int[3 * diagnostics.size()];
+		for (int i = 0; i < starts.length; i++) {
+			if (starts[i] < 0 || offsets[2 * i + 1] < 0) {
+				LanguageServerPlugin.logError("Invalid range " + diagnostics.get(i).getRange() + " in " //$NON-NLS-1$ //$NON-NLS-2$
+						+ resource.getFullPath(), null);
+				Arrays.fill(res, 3 * i, 3 * i + 3, -1);
+				continue;
 			}
-
-			IDocument document = textFileBuffer.getDocument();
-			int start = Math.min(LSPEclipseUtils.toOffset(diagnostic.getRange().getStart(), document),
-					document.getLength());
-			int end = Math.min(LSPEclipseUtils.toOffset(diagnostic.getRange().getEnd(), document),
-					document.getLength());
-
-			marker.setAttribute(IMarker.CHAR_START, start);
-			marker.setAttribute(IMarker.CHAR_END, end);
-			marker.setAttribute(IMarker.LINE_NUMBER, document.getLineOfOffset(start) + 1);
-		} catch (CoreException | BadLocationException e) {
-			LanguageServerPlugin.logError(e);
+			res[3 * i] = starts[i];
+			res[3 * i + 1] = Math.min(offsets[2 * i + 1], lineIndex.getLength());
+			res[3 * i + 2] = startPositions[i].getLine();
 		}
+		return res;
 	}
 
-	private IMarker getExistingMarkerFor(IResource resource, Diagnostic diagnostic, Set<IMarker> remainingMarkers) {
-		ITextFileBuffer textFileBuffer = FileBuffers.getTextFileBufferManager()
-				.getTextFileBuffer(resource.getFullPath(), LocationKind.IFILE);
+	private static IDocument getDocument(IFile file) throws CoreException {
+		ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+		ITextFileBuffer textFileBuffer = manager.getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
 		if (textFileBuffer == null) {
-			return null;
+			manager.connect(file.getFullPath(), LocationKind.IFILE, new NullProgressMonitor());
+			textFileBuffer = manager.getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+		}
+		return textFileBuffer.getDocument();
+	}
+
+	private void setAttributes(Diagnostic diagnostic, IMarker marker) throws CoreException {
+		marker.setAttribute(LSP_DIAGNOSTIC, diagnostic);
+		marker.setAttribute(LANGUAGE_SERVER_ID, this.languageServerId);
+		marker.setAttribute(IMarker.MESSAGE, diagnostic.getMessage());
+		marker.setAttribute(IMarker.SEVERITY, LSPEclipseUtils.toEclipseMarkerSeverity(diagnostic.getSeverity()));
+	}
+
+	protected void updateMarker(IResource resource, Diagnostic diagnostic, IMarker marker) {
+		try {
+			setAttributes(diagnostic, marker);
+			Map<Diagnostic, int[]> positions = this.acceptedPositions;
+			int[] markerPosition = positions != null ? positions.get(diagnostic) : null;
+			if (markerPosition == null) {
+				markerPosition = getMarkerPositions(resource, Collections.singletonList(diagnostic));
+			}
+			if (markerPosition != null && markerPosition[0] >= 0) {
+				marker.setAttribute(IMarker.CHAR_START, markerPosition[0]);
+				marker.setAttribute(IMarker.CHAR_END, markerPosition[1]);
+				marker.setAttribute(IMarker.LINE_NUMBER, markerPosition[2] + 1);
+			}
+		} catch (CoreException e) {
+			LanguageServerPlugin.logError(e);
 		}
+	}
 
-		IDocument document = textFileBuffer.getDocument();
+	private IMarker getExistingMarkerFor(Diagnostic diagnostic, int diagnosticStart, int diagnosticEnd, Set<IMarker> remainingMarkers) {
 		for (IMarker marker : remainingMarkers) {
 			int startOffset = MarkerUtilities.getCharStart(marker);
 			int endOffset = MarkerUtilities.getCharEnd(marker);
 			try {
 				if (marker.getResource().getProjectRelativePath().toString().equals(diagnostic.getSource())
-						&& LSPEclipseUtils.toOffset(diagnostic.getRange().getStart(), document) == startOffset + 1
-						&& LSPEclipseUtils.toOffset(diagnostic.getRange().getEnd(), document) == endOffset + 1
+						&& diagnosticStart == startOffset + 1
+						&& diagnosticEnd == endOffset + 1
 						&& Objects.equals(marker.getAttribute(IMarker.MESSAGE), diagnostic.getMessage())
 						&& Objects.equals(marker.getAttribute(LANGUAGE_SERVER_ID), this.languageServerId)) {
 					return marker;
 				}
-			} catch (CoreException | BadLocationException e) {
+			} catch (CoreException e) {
 				LanguageServerPlugin.logError(e);
 			}
 		}
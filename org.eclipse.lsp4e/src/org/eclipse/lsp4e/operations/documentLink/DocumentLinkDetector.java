@@ -11,6 +11,7 @@
 package org.eclipse.lsp4e.operations.documentLink;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -19,7 +20,10 @@ import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.Region;
@@ -29,7 +33,9 @@ import org.eclipse.jface.text.hyperlink.IHyperlink;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
+import org.eclipse.lsp4e.LargeDocumentPolicy;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4j.DocumentLink;
 import org.eclipse.lsp4j.DocumentLinkParams;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
@@ -80,42 +86,77 @@ public class DocumentLinkDetector extends AbstractHyperlinkDetector {
 
 	}
 
+	/**
+	 * Links of a large document, requested in background and reused until the document changes
+	 */
+	private CompletableFuture<List<DocumentLink>> deferredLinks;
+	private IDocument deferredLinksDocument;
+	private long deferredLinksStamp;
+
 	@Override
 	public IHyperlink[] detectHyperlinks(ITextViewer textViewer, IRegion region, boolean canShowMultipleHyperlinks) {
-		final LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(textViewer.getDocument(),
-				(capabilities) -> capabilities.getDocumentLinkProvider() != null);
-		if (info == null) {
+		// don't wait for language servers to start, links are available once they are ready
+		final List<@NonNull LSPDocumentInfo> infos = LanguageServiceAccessor
+				.getLSPDocumentInfosForAsync(textViewer.getDocument(), ServerCapability.DOCUMENT_LINK)
+				.getNow(Collections.emptyList());
+		if (infos.isEmpty()) {
 			return null;
 		}
+		final LSPDocumentInfo info = infos.get(0);
 		try {
 			DocumentLinkParams params = new DocumentLinkParams(
 					new TextDocumentIdentifier(info.getFileUri().toString()));
-			CompletableFuture<List<DocumentLink>> documentLink = info.getLanguageClient().getTextDocumentService()
-					.documentLink(params);
-			List<DocumentLink> links = documentLink.get(2, TimeUnit.SECONDS);
+			List<DocumentLink> links;
+			if (LargeDocumentPolicy.isLarge(info.getDocument())) {
+				// don't freeze the editor, links are available once computed
+				links = getDeferredLinks(info, params).getNow(null);
+			} else {
+				CompletableFuture<List<DocumentLink>> documentLink = info.sendRequest(service -> service.documentLink(params));
+				links = documentLink.get(2, TimeUnit.SECONDS);
+			}
 			if (links == null || links.isEmpty()) {
 				return null;
 			}
 
 			List<IHyperlink> hyperlinks = new ArrayList<IHyperlink>(links.size());
+			// detected in the UI thread, which can read the live document
+			IDocument document = textViewer.getDocument();
 			for (DocumentLink link : links) {
-				int start = LSPEclipseUtils.toOffset(link.getRange().getStart(), textViewer.getDocument());
-				int end = LSPEclipseUtils.toOffset(link.getRange().getEnd(), textViewer.getDocument());
+				int start;
+				int end;
+				try {
+					start = LSPEclipseUtils.toOffset(link.getRange().getStart(), document);
+					end = LSPEclipseUtils.toOffset(link.getRange().getEnd(), document);
+				} catch (BadLocationException e) {
+					// out of the document
+					continue;
+				}
 				IRegion linkRegion = new Region(start, end - start);
-				if (TextUtilities.overlaps(region, linkRegion)) {
-					if (link.getTarget() != null) {
-						hyperlinks.add(new DocumentHyperlink(link.getTarget(), linkRegion));
-					}
+				if (TextUtilities.overlaps(region, linkRegion) && link.getTarget() != null) {
+					hyperlinks.add(new DocumentHyperlink(link.getTarget(), linkRegion));
 				}
 			}
 			if (hyperlinks.isEmpty()) {
 				return null;
 			}
 			return hyperlinks.toArray(new IHyperlink[hyperlinks.size()]);
-		} catch (BadLocationException | InterruptedException | ExecutionException | TimeoutException e) {
+		} catch (InterruptedException | ExecutionException | TimeoutException e) {
 			LanguageServerPlugin.logError(e);
 		}
 		return null;
 	}
 
+	private CompletableFuture<List<DocumentLink>> getDeferredLinks(LSPDocumentInfo info, DocumentLinkParams params) {
+		IDocument document = info.getDocument();
+		long stamp = document instanceof IDocumentExtension4 ? ((IDocumentExtension4) document).getModificationStamp()
+				: IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		if (this.deferredLinks == null || this.deferredLinks.isCompletedExceptionally() || this.deferredLinksDocument != document
+				|| this.deferredLinksStamp != stamp || stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+			this.deferredLinks = info.sendRequest(service -> service.documentLink(params));
+			this.deferredLinksDocument = document;
+			this.deferredLinksStamp = stamp;
+		}
+		return this.deferredLinks;
+	}
+
 }
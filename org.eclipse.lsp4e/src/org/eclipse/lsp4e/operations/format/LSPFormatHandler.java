@@ -11,9 +11,13 @@
  *******************************************************************************/
 package org.eclipse.lsp4e.operations.format;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.viewers.ISelection;
@@ -52,11 +56,12 @@ public class LSPFormatHandler extends AbstractHandler {
 	public boolean isEnabled() {
 		IWorkbenchPart part = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage().getActivePart();
 		if (part instanceof ITextEditor) {
-			LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(
+			// don't wait for language servers to start, the command gets enabled once they are ready
+			List<@NonNull LSPDocumentInfo> infos = LanguageServiceAccessor.getLSPDocumentInfosForAsync(
 					LSPEclipseUtils.getDocument((ITextEditor) part),
-					(capabilities) -> LSPFormatter.supportFormatting(capabilities));
+					(capabilities) -> LSPFormatter.supportFormatting(capabilities)).getNow(Collections.emptyList());
 			ISelection selection = ((ITextEditor) part).getSelectionProvider().getSelection();
-			return info != null && !selection.isEmpty() && selection instanceof ITextSelection;
+			return !infos.isEmpty() && !selection.isEmpty() && selection instanceof ITextSelection;
 		}
 		return false;
 	}
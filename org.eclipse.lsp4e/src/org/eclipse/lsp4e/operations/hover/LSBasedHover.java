@@ -12,6 +12,7 @@ package org.eclipse.lsp4e.operations.hover;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -24,6 +25,7 @@ import org.eclipse.jface.resource.JFaceResources;
 import org.eclipse.jface.text.AbstractReusableInformationControlCreator;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DefaultInformationControl;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IInformationControl;
 import org.eclipse.jface.text.IInformationControlCreator;
 import org.eclipse.jface.text.IRegion;
@@ -35,6 +37,7 @@ import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4j.Hover;
 import org.eclipse.lsp4j.MarkedString;
 import org.eclipse.lsp4j.Range;
@@ -89,7 +92,9 @@ public class LSBasedHover implements ITextHover, ITextHoverExtension {
 		Hover hoverResult = null;
 		try {
 			hoverResult = this.hoverRequest.get(500, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException | ExecutionException | TimeoutException e) {
+		} catch (TimeoutException e) {
+			// language server still starting or computing, no hover this time
+		} catch (InterruptedException | ExecutionException e) {
 			LanguageServerPlugin.logError(e);
 		}
 		if (hoverResult == null) {
@@ -160,23 +165,20 @@ public class LSBasedHover implements ITextHover, ITextHoverExtension {
 		if (textViewer == null) {
 			return null;
 		}
-		IRegion res = new Region(offset, 0);
-		final LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(textViewer.getDocument(), (capabilities) -> Boolean.TRUE.equals(capabilities.getHoverProvider()));
-		if (info != null) {
-			try {
-				initiateHoverRequest(textViewer, offset);
-				Hover hover = hoverRequest.get(800, TimeUnit.MILLISECONDS);
-				if (hover != null && hover.getRange() != null) {
-					Range range = hover.getRange();
-					int rangeOffset = LSPEclipseUtils.toOffset(range.getStart(), info.getDocument());
-					res = new Region(rangeOffset, LSPEclipseUtils.toOffset(range.getEnd(), info.getDocument()) - rangeOffset);
-				}
-			} catch (TimeoutException | InterruptedException | ExecutionException | BadLocationException e) {
-				LanguageServerPlugin.logError(e);
-				res = new Region(offset, 1);
+		IRegion res = new Region(offset, 1);
+		IDocument document = textViewer.getDocument();
+		initiateHoverRequest(textViewer, offset);
+		try {
+			Hover hover = hoverRequest.get(800, TimeUnit.MILLISECONDS);
+			if (hover != null && hover.getRange() != null) {
+				Range range = hover.getRange();
+				int rangeOffset = LSPEclipseUtils.toOffset(range.getStart(), document);
+				res = new Region(rangeOffset, LSPEclipseUtils.toOffset(range.getEnd(), document) - rangeOffset);
 			}
-		} else {
-			res = new Region(offset, 1);
+		} catch (TimeoutException e) {
+			// language server still starting or computing, getHoverInfo will keep waiting for the same request
+		} catch (InterruptedException | ExecutionException | BadLocationException e) {
+			LanguageServerPlugin.logError(e);
 		}
 
 		this.lastRegion = res;
@@ -186,14 +188,21 @@ public class LSBasedHover implements ITextHover, ITextHoverExtension {
 
 	private void initiateHoverRequest(@NonNull ITextViewer viewer, int offset) {
 		this.textViewer = viewer;
-		final LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(viewer.getDocument(), (capabilities) -> Boolean.TRUE.equals(capabilities.getHoverProvider()));
-		if (info != null) {
-			try {
-				this.hoverRequest = info.getLanguageClient().getTextDocumentService().hover(LSPEclipseUtils.toTextDocumentPosistionParams(info.getFileUri(), offset, info.getDocument()));
-			} catch (BadLocationException e) {
-				LanguageServerPlugin.logError(e);
-			}
-		}
+		this.hoverRequest = LanguageServiceAccessor.getLSPDocumentInfosForAsync(viewer.getDocument(), ServerCapability.HOVER)
+				.thenCompose(infos -> {
+					if (infos.isEmpty()) {
+						return CompletableFuture.completedFuture(null);
+					}
+					LSPDocumentInfo info = infos.get(0);
+					// a hover computed for a previous version of the document is discarded
+					return info.sendRequest(service -> {
+						try {
+							return service.hover(LSPEclipseUtils.toTextDocumentPosistionParams(info.getFileUri(), offset, info.getDocument()));
+						} catch (BadLocationException e) {
+							throw new CompletionException(e);
+						}
+					});
+				});
 	}
 
 	@Override
@@ -11,7 +11,13 @@
  *******************************************************************************/
 package org.eclipse.lsp4e.operations.references;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -25,8 +31,10 @@ import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.lsp4e.DocumentSnapshot;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
+import org.eclipse.lsp4e.LineIndex;
 import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.Position;
@@ -55,14 +63,26 @@ public class LSSearchResult extends FileSearchResult {
 			textResult.removeAll();
 
 			try {
+				// references of a document are converted together, from a single snapshot
+				Map<String, List<Location>> locationsByUri = new LinkedHashMap<>();
 				for (Location loc : references.get(4, TimeUnit.SECONDS)) {
-					Match match = toMatch(loc, monitor);
-					addMatch(match);
+					locationsByUri.computeIfAbsent(loc.getUri(), uri -> new ArrayList<>()).add(loc);
+				}
+				for (Entry<String, List<Location>> entry : locationsByUri.entrySet()) {
+					precomputedMatches = toMatches(entry.getKey(), entry.getValue());
+					for (Location loc : entry.getValue()) {
+						Match match = toMatch(loc, monitor);
+						if (match != null) {
+							addMatch(match);
+						}
+					}
 				}
 				return Status.OK_STATUS;
 			} catch (Exception ex) {
 				return new Status(IStatus.ERROR,
 				        LanguageServerPlugin.getDefault().getBundle().getSymbolicName(), ex.getMessage(), ex);
+			} finally {
+				precomputedMatches = null;
 			}
 		}
 
@@ -74,6 +94,11 @@ public class LSSearchResult extends FileSearchResult {
 
 	private ISearchQuery query;
 	private CompletableFuture<List<? extends Location>> references;
+	/**
+	 * Matches of the locations of the document being searched, computed at
+	 * once for all of them
+	 */
+	private Map<Location, Match> precomputedMatches;
 
 	public LSSearchResult(CompletableFuture<List<? extends Location>> references) {
 		super(null);
@@ -81,28 +106,62 @@ public class LSSearchResult extends FileSearchResult {
 	}
 
 	protected Match toMatch(Location location, IProgressMonitor monitor) {
-		try {
-			IResource resource = LSPEclipseUtils.findResourceFor(location.getUri());
-			IDocument document = LSPEclipseUtils.getDocument(resource);
-			if (document != null) {
-				int startOffset = LSPEclipseUtils.toOffset(location.getRange().getStart(), document);
-				int endOffset = LSPEclipseUtils.toOffset(location.getRange().getEnd(), document);
-
-				IRegion lineInformation = document.getLineInformationOfOffset(startOffset);
-				LineElement lineEntry = new LineElement(resource, document.getLineOfOffset(startOffset),
-				        lineInformation.getOffset(),
-				        document.get(lineInformation.getOffset(), lineInformation.getLength()));
-				return new FileMatch((IFile) resource, startOffset, endOffset - startOffset, lineEntry);
+		Map<Location, Match> matches = this.precomputedMatches;
+		if (matches == null || !matches.containsKey(location)) {
+			matches = toMatches(location.getUri(), Collections.singletonList(location));
+		}
+		return matches.get(location);
+	}
 
+	/**
+	 * @return the matches of the locations, which are all in the resource of
+	 *         the given URI, converted at once from a single snapshot of its
+	 *         document. Invalid locations are mapped to <code>null</code>.
+	 */
+	private Map<Location, Match> toMatches(String uri, List<Location> locations) {
+		IResource resource = LSPEclipseUtils.findResourceFor(uri);
+		IDocument document = LSPEclipseUtils.getDocument(resource);
+		Map<Location, Match> res = new IdentityHashMap<>();
+		if (document == null) {
+			for (Location location : locations) {
+				Position startPosition = location.getRange().getStart();
+				LineElement lineEntry = new LineElement(resource, startPosition.getLine(), 0,
+				        String.format("%s:%s", startPosition.getLine(), startPosition.getCharacter())); //$NON-NLS-1$
+				res.put(location, new FileMatch((IFile) resource, 0, 0, lineEntry));
 			}
-			Position startPosition = location.getRange().getStart();
-			LineElement lineEntry = new LineElement(resource, startPosition.getLine(), 0,
-			        String.format("%s:%s", startPosition.getLine(), startPosition.getCharacter())); //$NON-NLS-1$
-			return new FileMatch((IFile) resource, 0, 0, lineEntry);
-		} catch (BadLocationException ex) {
-			LanguageServerPlugin.logError(ex);
+			return res;
 		}
-		return null;
+		// computed in a job, read a consistent content shared by all the references in the document
+		DocumentSnapshot snapshot = DocumentSnapshot.of(document);
+		LineIndex lineIndex = snapshot.getLineIndex();
+		List<Position> positions = new ArrayList<>(2 * locations.size());
+		for (Location location : locations) {
+			positions.add(location.getRange().getStart());
+			positions.add(location.getRange().getEnd());
+		}
+		int[] offsets = lineIndex.toOffsets(positions);
+		int[] startOffsets = new int[locations.size()];
+		for (int i = 0; i < startOffsets.length; i++) {
+			startOffsets[i] = offsets[2 * i];
+		}
+		Position[] startPositions = lineIndex.toPositions(startOffsets);
+		for (int i = 0; i < startOffsets.length; i++) {
+			try {
+				if (startPositions[i] == null || offsets[2 * i + 1] < 0) {
+					throw new BadLocationException("Invalid range " + locations.get(i).getRange()); //$NON-NLS-1$
+				}
+				int line = startPositions[i].getLine();
+				IRegion lineInformation = snapshot.getLineInformation(line);
+				LineElement lineEntry = new LineElement(resource, line,
+				        lineInformation.getOffset(),
+				        snapshot.get(lineInformation.getOffset(), lineInformation.getLength()));
+				res.put(locations.get(i), new FileMatch((IFile) resource, startOffsets[i], offsets[2 * i + 1] - startOffsets[i], lineEntry));
+			} catch (BadLocationException ex) {
+				LanguageServerPlugin.logError(ex);
+				res.put(locations.get(i), null);
+			}
+		}
+		return res;
 	}
 
 	@Override
@@ -10,12 +10,15 @@
  *******************************************************************************/
 package org.eclipse.lsp4e.operations.rename;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.core.commands.IHandler;
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jface.dialogs.Dialog;
 import org.eclipse.jface.dialogs.InputDialog;
 import org.eclipse.jface.text.BadLocationException;
@@ -26,6 +29,7 @@ import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.RenameParams;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
@@ -48,7 +52,7 @@ public class LSPRenameHandler extends AbstractHandler implements IHandler {
 		if (part instanceof AbstractTextEditor) {
 			LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(
 				LSPEclipseUtils.getDocument((ITextEditor) part),
-				(capabilities) -> Boolean.TRUE.equals(capabilities.getRenameProvider()));
+				ServerCapability.RENAME);
 			if (info != null) {
 				ISelection sel = ((AbstractTextEditor) part).getSelectionProvider().getSelection();
 				if (sel instanceof TextSelection) {
@@ -76,12 +80,12 @@ public class LSPRenameHandler extends AbstractHandler implements IHandler {
 	public boolean isEnabled() {
 		IWorkbenchPart part = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage().getActivePart();
 		if (part instanceof AbstractTextEditor) {
-			LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(
+			// don't wait for language servers to start, the command gets enabled once they are ready
+			List<@NonNull LSPDocumentInfo> infos = LanguageServiceAccessor.getLSPDocumentInfosForAsync(
 				LSPEclipseUtils.getDocument((ITextEditor) part),
-				(capabilities) ->
-					Boolean.TRUE.equals(capabilities.getRenameProvider()));
+				ServerCapability.RENAME).getNow(Collections.emptyList());
 			ISelection selection = ((AbstractTextEditor) part).getSelectionProvider().getSelection();
-			return info != null && !selection.isEmpty() && selection instanceof ITextSelection;
+			return !infos.isEmpty() && !selection.isEmpty() && selection instanceof ITextSelection;
 		}
 		return false;
 	}
@@ -19,6 +19,7 @@ import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4j.DocumentSymbolParams;
 import org.eclipse.lsp4j.SymbolInformation;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
@@ -36,7 +37,7 @@ public class LSPSymbolInFileHandler extends AbstractHandler {
 			final ITextEditor textEditor = (ITextEditor) part;
 			LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(
 					LSPEclipseUtils.getDocument(textEditor),
-			        (capabilities) -> Boolean.TRUE.equals(capabilities.getDocumentSymbolProvider()));
+			        ServerCapability.DOCUMENT_SYMBOL);
 			if (info == null) {
 				return null;
 			}
@@ -23,6 +23,7 @@ import org.eclipse.jface.dialogs.IDialogConstants;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.SymbolInformation;
 import org.eclipse.lsp4j.services.LanguageServer;
@@ -54,7 +55,7 @@ public class LSPSymbolInWorkspaceHandler extends AbstractHandler {
 		}
 		IProject project = resource.getProject();
 		List<@NonNull LanguageServer> languageServers = LanguageServiceAccessor.getLanguageServers(project,
-				capabilities -> Boolean.TRUE.equals(capabilities.getWorkspaceSymbolProvider()));
+				ServerCapability.WORKSPACE_SYMBOL);
 		if (languageServers.isEmpty()) {
 			return null;
 		}
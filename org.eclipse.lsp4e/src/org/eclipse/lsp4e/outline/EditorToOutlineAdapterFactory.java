@@ -14,6 +14,7 @@ import org.eclipse.core.runtime.IAdapterFactory;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServiceAccessor;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ServerCapability;
 import org.eclipse.ui.texteditor.ITextEditor;
 import org.eclipse.ui.views.contentoutline.IContentOutlinePage;
 
@@ -24,7 +25,7 @@ public class EditorToOutlineAdapterFactory implements IAdapterFactory {
 		if (adapterType == IContentOutlinePage.class && adaptableObject instanceof ITextEditor) {
 			LSPDocumentInfo info = LanguageServiceAccessor.getLSPDocumentInfoFor(
 				LSPEclipseUtils.getDocument((ITextEditor) adaptableObject),
-				capabilities -> Boolean.TRUE.equals(capabilities.getDocumentSymbolProvider()));
+				ServerCapability.DOCUMENT_SYMBOL);
 			if (info != null) {
 				return (T)new CNFOutinePage(info);
 			}
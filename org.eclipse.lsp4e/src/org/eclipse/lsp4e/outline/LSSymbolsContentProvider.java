@@ -19,6 +19,10 @@ import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.viewers.ITreeContentProvider;
@@ -27,7 +31,9 @@ import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.lsp4e.LSPEclipseUtils;
 import org.eclipse.lsp4e.LanguageServerPlugin;
+import org.eclipse.lsp4e.LargeDocumentPolicy;
 import org.eclipse.lsp4e.LanguageServiceAccessor.LSPDocumentInfo;
+import org.eclipse.lsp4e.ui.Messages;
 import org.eclipse.lsp4j.DocumentSymbolParams;
 import org.eclipse.lsp4j.SymbolInformation;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
@@ -47,6 +53,26 @@ public class LSSymbolsContentProvider implements ICommonContentProvider, ITreeCo
 	private CompletableFuture<List<? extends SymbolInformation>> symbols;
 
 	private IResource resource;
+	/**
+	 * Number of characters above which the document is large, see {@link LargeDocumentPolicy}
+	 */
+	private int largeDocumentThreshold;
+
+	/**
+	 * Refreshes the outline of large documents at most once per
+	 * {@link LargeDocumentPolicy#getOutlineRefreshDelay() delay}
+	 */
+	private final Job throttledRefreshJob = new Job(Messages.outline_refresh_job) {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			refreshTreeContentFromLS();
+			return Status.OK_STATUS;
+		}
+	};
+
+	public LSSymbolsContentProvider() {
+		this.throttledRefreshJob.setSystem(true);
+	}
 
 	@Override
 	public void init(ICommonContentExtensionSite aConfig) {
@@ -58,6 +84,7 @@ public class LSSymbolsContentProvider implements ICommonContentProvider, ITreeCo
 		this.info = (LSPDocumentInfo) newInput;
 		info.getDocument().addDocumentListener(this);
 		resource = LSPEclipseUtils.findResourceFor(info.getFileUri().toString());
+		largeDocumentThreshold = LargeDocumentPolicy.getThreshold(resource.getName());
 		resource.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
 		refreshTreeContentFromLS();
 	}
@@ -95,6 +122,14 @@ public class LSSymbolsContentProvider implements ICommonContentProvider, ITreeCo
 
 	@Override
 	public void documentChanged(DocumentEvent event) {
+		if (largeDocumentThreshold > 0 && event.getDocument().getLength() > largeDocumentThreshold) {
+			int state = this.throttledRefreshJob.getState();
+			// a running refresh may have read the document before this change, it gets run again
+			if (state != Job.WAITING && state != Job.SLEEPING) {
+				this.throttledRefreshJob.schedule(LargeDocumentPolicy.getOutlineRefreshDelay());
+			}
+			return;
+		}
 		refreshTreeContentFromLS();
 	}
 
@@ -104,10 +139,14 @@ public class LSSymbolsContentProvider implements ICommonContentProvider, ITreeCo
 		}
 		lastError = null;
 		DocumentSymbolParams params = new DocumentSymbolParams(new TextDocumentIdentifier(info.getFileUri().toString()));
+		int version = info.getVersion();
 		symbols = info.getLanguageClient().getTextDocumentService().documentSymbol(params);
 
 		symbols.thenAccept((List<? extends SymbolInformation> t) -> {
-			symbolsModel.update(t);
+			// symbols computed for a previous version are discarded, the change triggers another refresh
+			if (info.isCurrent(version)) {
+				symbolsModel.update(t);
+			}
 
 			viewer.getControl().getDisplay().asyncExec(() -> {
 				viewer.refresh();
@@ -125,6 +164,7 @@ public class LSSymbolsContentProvider implements ICommonContentProvider, ITreeCo
 
 	@Override
 	public void dispose() {
+		this.throttledRefreshJob.cancel();
 		info.getDocument().removeDocumentListener(this);
 		resource.getWorkspace().removeResourceChangeListener(this);
 		ICommonContentProvider.super.dispose();
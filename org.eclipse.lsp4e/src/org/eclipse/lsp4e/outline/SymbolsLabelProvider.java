@@ -70,12 +70,17 @@ public class SymbolsLabelProvider extends LabelProvider implements ICommonLabelP
 		if (resource != null) {
 			try {
 				IDocument doc = LSPEclipseUtils.getDocument(resource);
+				IMarker[] markers = resource.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_ZERO);
+				if (markers.length == 0) {
+					return res;
+				}
+				// labels are computed in the UI thread, which can read the live document
+				int symbolStart = LSPEclipseUtils.toOffset(symbolInformation.getLocation().getRange().getStart(), doc);
+				int symbolEnd = LSPEclipseUtils.toOffset(symbolInformation.getLocation().getRange().getEnd(), doc);
 				int maxSeverity = -1;
-				for (IMarker marker : resource.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_ZERO)) {
+				for (IMarker marker : markers) {
 					int offset = marker.getAttribute(IMarker.CHAR_START, -1);
-					if (offset != -1
-					    && offset >= LSPEclipseUtils.toOffset(symbolInformation.getLocation().getRange().getStart(), doc)
-					    && offset <= LSPEclipseUtils.toOffset(symbolInformation.getLocation().getRange().getEnd(), doc)) {
+					if (offset != -1 && offset >= symbolStart && offset <= symbolEnd) {
 						maxSeverity = Math.max(maxSeverity, marker.getAttribute(IMarker.SEVERITY, -1));
 					}
 				}
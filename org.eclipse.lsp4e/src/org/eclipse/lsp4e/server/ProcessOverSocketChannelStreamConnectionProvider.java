@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  agent - initial implementation
+ *******************************************************************************/
+package org.eclipse.lsp4e.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4e.LanguageServerPlugin;
+
+/**
+ * Starts a process and waits for it to connect to a local socket channel.
+ * Unlike {@link ProcessOverSocketStreamConnectionProvider}, the socket is
+ * bound to an ephemeral loopback port by default, so multiple servers don't
+ * collide, and {@link #start()} gives up if the process doesn't connect
+ * within the accept timeout. Occurrences of {@link #PORT_VARIABLE} in the
+ * commands are replaced by the actual port before starting the process.
+ *
+ * @since 0.3.0
+ */
+public abstract class ProcessOverSocketChannelStreamConnectionProvider extends ProcessStreamConnectionProvider {
+
+	public static final String PORT_VARIABLE = "${port}"; //$NON-NLS-1$
+	public static final int DEFAULT_ACCEPT_TIMEOUT = 10000;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private int port;
+	private int acceptTimeout;
+	private int boundPort = -1;
+	private SocketChannel channel;
+	private InputStream inputStream;
+	private OutputStream outputStream;
+
+	/**
+	 * Channel streams directly reading/writing the channel. Streams from
+	 * {@link java.nio.channels.Channels} would synchronize reads and writes on
+	 * the same lock, blocking any write while waiting for the server to send
+	 * something.
+	 */
+	private static class SocketChannelInputStream extends InputStream {
+		private final SocketChannel channel;
+
+		SocketChannelInputStream(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			return read == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			return channel.read(ByteBuffer.wrap(b, off, len));
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	private static class SocketChannelOutputStream extends OutputStream {
+		private final SocketChannel channel;
+
+		SocketChannelOutputStream(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Uses an ephemeral port which is passed to the process through
+	 * {@link #PORT_VARIABLE}, and the default accept timeout.
+	 */
+	public ProcessOverSocketChannelStreamConnectionProvider(List<String> commands, String workingDir) {
+		this(commands, workingDir, 0, DEFAULT_ACCEPT_TIMEOUT);
+	}
+
+	/**
+	 * @param port the port to listen on, or 0 for an ephemeral port
+	 * @param acceptTimeout maximum time in milliseconds to wait for the process to connect
+	 */
+	public ProcessOverSocketChannelStreamConnectionProvider(List<String> commands, String workingDir, int port, int acceptTimeout) {
+		super(commands, workingDir);
+		this.port = port;
+		this.acceptTimeout = acceptTimeout;
+	}
+
+	@Override
+	public void start() throws IOException {
+		SocketChannel accepted = null;
+		try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+				Selector selector = Selector.open()) {
+			serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port));
+			this.boundPort = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+			super.start();
+			long deadline = System.currentTimeMillis() + this.acceptTimeout;
+			long remaining = this.acceptTimeout;
+			while (accepted == null && remaining > 0) {
+				if (selector.select(remaining) > 0) {
+					selector.selectedKeys().clear();
+					accepted = serverChannel.accept();
+				}
+				remaining = deadline - System.currentTimeMillis();
+			}
+		}
+		if (accepted == null) {
+			super.stop();
+			throw new IOException("Language server didn't connect to port " + this.boundPort + " within " //$NON-NLS-1$ //$NON-NLS-2$
+					+ this.acceptTimeout + "ms: " + toString()); //$NON-NLS-1$
+		}
+		accepted.configureBlocking(true);
+		accepted.socket().setTcpNoDelay(true);
+		this.channel = accepted;
+		this.inputStream = new BufferedInputStream(new SocketChannelInputStream(accepted), BUFFER_SIZE);
+		this.outputStream = new BufferedOutputStream(new SocketChannelOutputStream(accepted), BUFFER_SIZE);
+	}
+
+	@Override
+	protected ProcessBuilder createProcessBuilder() {
+		ProcessBuilder builder = super.createProcessBuilder();
+		String portValue = Integer.toString(this.boundPort);
+		builder.command(builder.command().stream()
+				.map(command -> command.replace(PORT_VARIABLE, portValue))
+				.collect(Collectors.toList()));
+		return builder;
+	}
+
+	/**
+	 * @return the port actually listened on, or -1 if not started yet
+	 */
+	public int getPort() {
+		return this.boundPort;
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				LanguageServerPlugin.logError(e);
+			}
+			channel = null;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return super.equals(obj) && obj instanceof ProcessOverSocketChannelStreamConnectionProvider
+				&& this.port == ((ProcessOverSocketChannelStreamConnectionProvider) obj).port;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = super.hashCode();
+		return result ^ Objects.hashCode(this.port);
+	}
+
+}
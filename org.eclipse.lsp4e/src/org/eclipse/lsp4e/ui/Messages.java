@@ -38,6 +38,7 @@ public class Messages extends NLS {
 	public static String LSPSymbolInWorkspaceDialog_DialogTitle;
 	public static String updateCodelensMenu_job;
 	public static String outline_computingSymbols;
+	public static String outline_refresh_job;
 	public static String findReferences_jobName;
 	public static String findReferences_updateResultView_jobName;
 	public static String rename_title;
@@ -45,6 +46,12 @@ public class Messages extends NLS {
 	public static String rename_invalid;
 	public static String serverEdit;
 	public static String completionError;
+	public static String prewarm_job;
+	public static String prewarm_startServer;
+	public static String stopIdleLanguageServer_job;
+	public static String evictIdleLanguageServers_job;
+	public static String restartLanguageServer_job;
+	public static String sendDocumentChanges_job;
 
 	static {
 		NLS.initializeMessages(Messages.class.getPackage().getName() + ".messages", Messages.class); //$NON-NLS-1$